@@ -0,0 +1,193 @@
+package no.trinnvis;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeName;
+import io.swagger.oas.models.OpenAPI;
+import io.swagger.oas.models.media.Schema;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the phases of the generator pipeline separately: parsing, type map construction, {@code findClass}
+ * resolution, model {@code TypeSpec} construction and writing the sources.
+ *
+ * <p>The {@code spec} parameter is either {@code bundled}, the specification in {@code test/openapi.yaml}
+ * (override with {@code -Dbenchmark.spec=...}), or the number of schemas in a synthetic specification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"bundled", "1000", "10000", "50000"})
+    public String spec;
+
+    private File directory;
+    private File input;
+    private File output;
+    private OpenAPI openAPI;
+    private OpenApiGenerator resolved;
+    private List<JavaFile> javaFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("generator-benchmark").toFile();
+
+        if ("bundled".equals(spec)) {
+            input = new File(System.getProperty("benchmark.spec", "test/openapi.yaml"));
+        } else {
+            input = SyntheticSpecs.write(new File(directory, "openapi.yaml"), Integer.parseInt(spec));
+        }
+        output = new File(directory, "output");
+
+        resolved = new OpenApiGenerator(output, input);
+        resolved.parse();
+        resolved.buildTypeMap(schemas(resolved));
+        openAPI = resolved.openAPI();
+
+        javaFiles = new ArrayList<>();
+        schemas(resolved).forEach((name, schema) ->
+            javaFiles.add(resolved.modelType(name, schema, resolved.destinationPackage())));
+    }
+
+    @Setup(Level.Iteration)
+    public void cleanOutput() throws IOException {
+        output = Files.createTempDirectory(directory.toPath(), "output").toFile();
+        write(output);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteOutput() throws IOException {
+        delete(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(directory);
+    }
+
+    @Benchmark
+    public OpenAPI parse() throws IOException {
+        OpenApiGenerator generator = new OpenApiGenerator(output, input);
+        generator.parse();
+        return generator.openAPI();
+    }
+
+    @Benchmark
+    public OpenApiGenerator typeMap() {
+        OpenApiGenerator generator = new OpenApiGenerator(output, input);
+        generator.index(openAPI);
+        generator.buildTypeMap(schemas(generator));
+        return generator;
+    }
+
+    @Benchmark
+    public void findClass(final Blackhole blackhole) {
+        schemas(resolved).forEach((name, schema) -> {
+            Map<String, Schema> properties = schema.getProperties();
+            if (properties != null) {
+                properties.forEach((property, propertySchema) -> {
+                    TypeName type = resolved.findClass(property, propertySchema);
+                    blackhole.consume(type);
+                });
+            }
+        });
+    }
+
+    @Benchmark
+    public void typeSpecs(final Blackhole blackhole) {
+        schemas(resolved).forEach((name, schema) ->
+            blackhole.consume(resolved.modelType(name, schema, resolved.destinationPackage())));
+    }
+
+    /**
+     * Writes every model into an empty directory.
+     */
+    @Benchmark
+    public int writeFresh(final FreshOutput fresh) throws IOException {
+        return write(fresh.directory);
+    }
+
+    /**
+     * Writes every model over the same sources, measuring the compare-and-skip path for unchanged content.
+     */
+    @Benchmark
+    public int rewriteUnchanged() throws IOException {
+        return write(output);
+    }
+
+    /**
+     * @return the number of files whose content changed
+     */
+    private int write(final File directory) throws IOException {
+        SourceWriter writer = new SourceWriter(directory.toPath());
+        int written = 0;
+        for (JavaFile javaFile : javaFiles) {
+            if (writer.write(javaFile)) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * An empty output directory per invocation, deleted outside of the measured time.
+     */
+    @State(Scope.Thread)
+    public static class FreshOutput {
+
+        private File directory;
+
+        @Setup(Level.Invocation)
+        public void create() throws IOException {
+            directory = Files.createTempDirectory("generator-benchmark-fresh").toFile();
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            GeneratorBenchmark.delete(directory);
+        }
+    }
+
+    private static void delete(final File root) throws IOException {
+        if (!root.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            // deepest first, so that every directory is empty when it is deleted
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Schema> schemas(final OpenApiGenerator generator) {
+        return generator.openAPI().getComponents().getSchemas();
+    }
+}
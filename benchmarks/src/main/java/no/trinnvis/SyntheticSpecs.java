@@ -0,0 +1,43 @@
+package no.trinnvis;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes specifications with a given number of component schemas, shaped like the models in the bundled spec:
+ * scalar, uuid, date-time and enum properties, a reference to another schema and an array of references.
+ */
+final class SyntheticSpecs {
+
+    private SyntheticSpecs() {
+    }
+
+    static File write(final File file, final int schemas) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("openapi: 3.0.0\n");
+            writer.write("info:\n  title: synthetic\n  version: '1'\n");
+            writer.write("paths: {}\n");
+            writer.write("components:\n  schemas:\n");
+
+            for (int i = 0; i < schemas; i++) {
+                String referenced = "Model" + (i * 31 % schemas);
+
+                writer.write("    Model" + i + ":\n");
+                writer.write("      type: object\n");
+                writer.write("      properties:\n");
+                writer.write("        name:\n          type: string\n");
+                writer.write("        count:\n          type: integer\n          format: int32\n");
+                writer.write("        uuid:\n          type: string\n          format: uuid\n");
+                writer.write("        createdDateTime:\n          type: string\n          format: date-time\n");
+                writer.write("        state" + (i % 100) + ":\n          type: string\n          enum:\n            - ACTIVE\n            - INACTIVE\n");
+                writer.write("        related:\n          $ref: '#/components/schemas/" + referenced + "'\n");
+                writer.write("        children:\n          type: array\n          items:\n            $ref: '#/components/schemas/" + referenced + "'\n");
+            }
+        }
+
+        return file;
+    }
+}
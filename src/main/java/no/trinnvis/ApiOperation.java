@@ -0,0 +1,260 @@
+package no.trinnvis;
+
+import com.google.common.base.CaseFormat;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+import io.swagger.oas.models.OpenAPI;
+import io.swagger.oas.models.Operation;
+import io.swagger.oas.models.PathItem;
+import io.swagger.oas.models.media.Content;
+import io.swagger.oas.models.media.MediaType;
+import io.swagger.oas.models.media.Schema;
+import io.swagger.oas.models.parameters.Parameter;
+import io.swagger.oas.models.responses.ApiResponse;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import javax.lang.model.SourceVersion;
+
+/**
+ * An operation of the specification with its parameters, request body and response resolved to Java types.
+ */
+final class ApiOperation {
+
+    static final String JSON = "application/json";
+
+    private final String path;
+    private final PathItem.HttpMethod method;
+    private final Operation operation;
+    private final List<ApiParameter> parameters = new ArrayList<>();
+    private TypeName body;
+    private String bodyMediaType;
+    private Schema responseSchema;
+    private TypeName response;
+
+    private ApiOperation(final String path, final PathItem.HttpMethod method, final Operation operation) {
+        this.path = path;
+        this.method = method;
+        this.operation = operation;
+    }
+
+    /**
+     * All operations of the specification in declaration order.
+     *
+     * @param types resolves a schema to its Java type, the name is used for inline enums
+     */
+    static List<ApiOperation> of(final OpenAPI openAPI, final BiFunction<String, Schema, TypeName> types) {
+        List<ApiOperation> operations = new ArrayList<>();
+        if (openAPI.getPaths() == null) {
+            return operations;
+        }
+
+        openAPI.getPaths().forEach((path, item) -> item.readOperationsMap().forEach((method, operation) -> {
+            ApiOperation apiOperation = new ApiOperation(path, method, operation);
+            apiOperation.resolve(openAPI, item, types);
+            operations.add(apiOperation);
+        }));
+
+        return operations;
+    }
+
+    private void resolve(final OpenAPI openAPI, final PathItem item, final BiFunction<String, Schema, TypeName> types) {
+        // operation parameters override path item parameters with the same name and location
+        List<Parameter> all = new ArrayList<>();
+        if (item.getParameters() != null) {
+            all.addAll(item.getParameters());
+        }
+        if (operation.getParameters() != null) {
+            all.addAll(operation.getParameters());
+        }
+
+        Map<String, Parameter> declared = new LinkedHashMap<>();
+        for (Parameter parameter : all) {
+            Parameter resolved = dereference(openAPI, parameter);
+            declared.put(resolved.getIn() + ":" + resolved.getName(), resolved);
+        }
+
+        declared.values().forEach(parameter -> {
+            Schema schema = parameter.getSchema();
+            TypeName type = schema != null ? types.apply(javaName(parameter.getName()), schema) : ClassName.get(String.class);
+            parameters.add(new ApiParameter(parameter.getName(), javaName(parameter.getName()), parameter.getIn(), type,
+                Boolean.TRUE.equals(parameter.getRequired()) || "path".equals(parameter.getIn()), parameter.getDescription()));
+        });
+
+        if (operation.getRequestBody() != null && operation.getRequestBody().getContent() != null
+            && !operation.getRequestBody().getContent().isEmpty()) {
+            Content content = operation.getRequestBody().getContent();
+            if (content.containsKey(JSON) && content.get(JSON).getSchema() != null) {
+                body = types.apply(methodName() + "Body", content.get(JSON).getSchema());
+                bodyMediaType = JSON;
+            } else {
+                body = ClassName.get(InputStream.class);
+                bodyMediaType = content.keySet().iterator().next();
+            }
+        }
+
+        ApiResponse success = operation.getResponses() != null ? operation.getResponses().get("200") : null;
+        if (success != null && success.getContent() != null) {
+            MediaType mediaType = success.getContent().get(JSON);
+            if (mediaType != null && mediaType.getSchema() != null) {
+                responseSchema = mediaType.getSchema();
+                response = types.apply(methodName() + "Response", responseSchema);
+            }
+        }
+    }
+
+    private static Parameter dereference(final OpenAPI openAPI, final Parameter parameter) {
+        if (parameter.get$ref() == null || openAPI.getComponents() == null || openAPI.getComponents().getParameters() == null) {
+            return parameter;
+        }
+        String ref = parameter.get$ref();
+        Parameter resolved = openAPI.getComponents().getParameters().get(ref.substring(ref.lastIndexOf('/') + 1));
+        return resolved != null ? resolved : parameter;
+    }
+
+    String path() {
+        return path;
+    }
+
+    PathItem.HttpMethod method() {
+        return method;
+    }
+
+    /**
+     * The first segment of the path, operations are grouped into one resource per group.
+     */
+    String group() {
+        String[] segments = path.split("/");
+        return segments.length > 1 ? segments[1] : "";
+    }
+
+    /**
+     * The path below the group, empty for the group itself.
+     */
+    String relativePath() {
+        return path.substring(Math.min(path.length(), group().length() + 1));
+    }
+
+    /**
+     * The http method followed by the segments of the relative path, templates prefixed by "By".
+     */
+    String methodName() {
+        StringBuilder name = new StringBuilder(method.name().toLowerCase());
+        for (String segment : relativePath().split("/")) {
+            if (segment.startsWith("{")) {
+                name.append("By").append(camel(segment));
+            } else {
+                name.append(camel(segment));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * The first tag of the operation, or the group if it has none.
+     */
+    String tag() {
+        return operation.getTags() != null && !operation.getTags().isEmpty() ? operation.getTags().get(0) : group();
+    }
+
+    String description() {
+        return operation.getDescription();
+    }
+
+    Operation operation() {
+        return operation;
+    }
+
+    List<ApiParameter> parameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * The type of the request body, null if the operation takes none.
+     */
+    TypeName body() {
+        return body;
+    }
+
+    String bodyMediaType() {
+        return bodyMediaType;
+    }
+
+    /**
+     * The type of the JSON success response, null if the operation returns none.
+     */
+    TypeName response() {
+        return response;
+    }
+
+    Schema responseSchema() {
+        return responseSchema;
+    }
+
+    /**
+     * UpperCamel form of a path segment, tag or parameter name.
+     */
+    static String camel(final String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (String part : value.split("[^A-Za-z0-9]+")) {
+            if (!part.isEmpty()) {
+                result.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+            }
+        }
+        return result.toString();
+    }
+
+    static String javaName(final String value) {
+        String name = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_CAMEL, camel(value));
+        return SourceVersion.isName(name) ? name : name + "Value";
+    }
+
+    /**
+     * A path, query, header or cookie parameter.
+     */
+    static final class ApiParameter {
+        private final String name;
+        private final String javaName;
+        private final String in;
+        private final TypeName type;
+        private final boolean required;
+        private final String description;
+
+        ApiParameter(final String name, final String javaName, final String in, final TypeName type, final boolean required, final String description) {
+            this.name = name;
+            this.javaName = javaName;
+            this.in = in;
+            this.type = type;
+            this.required = required;
+            this.description = description;
+        }
+
+        String name() {
+            return name;
+        }
+
+        String javaName() {
+            return javaName;
+        }
+
+        String in() {
+            return in;
+        }
+
+        TypeName type() {
+            return type;
+        }
+
+        boolean required() {
+            return required;
+        }
+
+        String description() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.CaseFormat;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import io.swagger.oas.models.PathItem;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Generated;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates an http client per group of operations, see {@link ApiOperation#group()}, and the {@value #API_CLIENT}
+ * they share.
+ *
+ * <p>Requests go through {@link HttpURLConnection}, which keeps connections alive between requests as long as
+ * every response is read to the end and closed. Bodies are written to and read from the connection by Jackson
+ * without being buffered, gzip compressed if enabled.</p>
+ */
+final class ClientWriter {
+
+    static final String API_CLIENT = "ApiClient";
+    static final int DEFAULT_POOL_SIZE = 5;
+
+    private final String packageName;
+    private final ClassName module;
+
+    /**
+     * @param packageName the package of the generated clients
+     * @param module the generated codec module registered by the default mapper, null if there is none
+     */
+    ClientWriter(final String packageName, final ClassName module) {
+        this.packageName = packageName;
+        this.module = module;
+    }
+
+    ClassName clientOf(final String group) {
+        return ClassName.get(packageName, ApiOperation.camel(group) + "Client");
+    }
+
+    JavaFile client(final String group, final List<ApiOperation> operations) {
+        ClassName apiClient = ClassName.get(packageName, API_CLIENT);
+        TypeSpec.Builder builder = TypeSpec.classBuilder(clientOf(group))
+            .addJavadoc("A client of the $L api.\n", group)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(generated())
+            .addField(apiClient, "client", Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(apiClient, "client", Modifier.FINAL)
+                .addStatement("this.client = client")
+                .build());
+
+        Map<ApiOperation, String> names = ResourceWriter.methodNames(operations);
+        for (ApiOperation operation : operations) {
+            if (supports(operation)) {
+                method(builder, operation, names.get(operation));
+            }
+        }
+
+        return javaFile(builder.build());
+    }
+
+    /**
+     * Whether HttpURLConnection can send the method of the operation, the others are skipped.
+     */
+    static boolean supports(final ApiOperation operation) {
+        return operation.method() != PathItem.HttpMethod.PATCH && operation.method() != PathItem.HttpMethod.TRACE;
+    }
+
+    private void method(final TypeSpec.Builder builder, final ApiOperation operation, final String name) {
+        MethodSpec.Builder method = MethodSpec.methodBuilder(name)
+            .addModifiers(Modifier.PUBLIC)
+            .addException(IOException.class);
+
+        if (operation.description() != null) {
+            method.addJavadoc("$L\n", operation.description().trim());
+        }
+
+        Set<String> taken = new HashSet<>();
+        operation.parameters().forEach(p -> taken.add(p.javaName()));
+        String queryName = local("query", taken);
+        String headersName = local("headers", taken);
+
+        Map<String, CodeBlock> pathValues = new LinkedHashMap<>();
+        CodeBlock.Builder query = CodeBlock.builder();
+        CodeBlock.Builder headers = CodeBlock.builder();
+        List<CodeBlock> cookies = new ArrayList<>();
+        boolean hasQuery = false;
+        for (ApiOperation.ApiParameter parameter : operation.parameters()) {
+            method.addParameter(parameter.type(), parameter.javaName(), Modifier.FINAL);
+            if (parameter.description() != null) {
+                method.addJavadoc("@param $L $L\n", parameter.javaName(), parameter.description().trim());
+            }
+            switch (parameter.in()) {
+                case "path":
+                    pathValues.put(parameter.name().replace("+", ""), parameter.name().endsWith("+")
+                        ? CodeBlock.of("$T.encodePath($L)", ClassName.get(packageName, API_CLIENT), parameter.javaName())
+                        : CodeBlock.of("$T.encode($L)", ClassName.get(packageName, API_CLIENT), parameter.javaName()));
+                    break;
+                case "query":
+                    query.addStatement("$L.put($S, $L)", queryName, parameter.name(), parameter.javaName());
+                    hasQuery = true;
+                    break;
+                case "header":
+                    headers.addStatement("$L.put($S, $L)", headersName, parameter.name(), parameter.javaName());
+                    break;
+                default:
+                    cookies.add(CodeBlock.of("$S + $L", (cookies.isEmpty() ? "" : "; ") + parameter.name() + "=", parameter.javaName()));
+            }
+        }
+        if (!cookies.isEmpty()) {
+            CodeBlock.Builder cookie = CodeBlock.builder().add("$L", cookies.get(0));
+            cookies.subList(1, cookies.size()).forEach(c -> cookie.add(" + $L", c));
+            headers.addStatement("$L.put($S, $L)", headersName, "Cookie", cookie.build());
+        }
+        boolean hasHeaders = operation.parameters().stream().anyMatch(p -> "header".equals(p.in()) || "cookie".equals(p.in()));
+
+        String bodyName = null;
+        if (operation.body() != null) {
+            bodyName = local("body", taken);
+            method.addParameter(operation.body(), bodyName, Modifier.FINAL);
+        }
+
+        TypeName strings = ParameterizedTypeName.get(Map.class, String.class, Object.class);
+        method.addStatement("$T $L = $L", strings, queryName, !hasQuery ? CodeBlock.of("$T.emptyMap()", Collections.class) : CodeBlock.of("new $T<>()", LinkedHashMap.class));
+        method.addCode(query.build());
+        method.addStatement("$T $L = $L", strings, headersName, !hasHeaders ? CodeBlock.of("$T.emptyMap()", Collections.class) : CodeBlock.of("new $T<>()", LinkedHashMap.class));
+        method.addCode(headers.build());
+
+        String response = "null";
+        if (operation.response() != null) {
+            response = CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, name);
+            TypeName type = operation.response().isPrimitive() ? operation.response().box() : operation.response();
+            builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(TypeReference.class), type), response,
+                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<$T>() { }", TypeReference.class, type)
+                .build());
+            method.returns(operation.response());
+        }
+
+        CodeBlock send = CodeBlock.of("this.client.send($S, $L, $L, $L, $L, $L, $L)", operation.method().name(), path(operation.path(), pathValues), queryName, headersName,
+            bodyName != null ? bodyName : "null", operation.bodyMediaType() != null ? CodeBlock.of("$S", operation.bodyMediaType()) : "null", response);
+        if (operation.response() != null) {
+            method.addStatement("return $L", send);
+        } else {
+            method.addStatement("$L", send);
+        }
+
+        builder.addMethod(method.build());
+    }
+
+    /**
+     * The name, prefixed by "request" if a parameter already has it.
+     */
+    private static String local(final String name, final Set<String> taken) {
+        return taken.contains(name) ? "request" + ApiOperation.camel(name) : name;
+    }
+
+    /**
+     * The path with its templates replaced by the encoded parameter values.
+     */
+    private static CodeBlock path(final String path, final Map<String, CodeBlock> values) {
+        CodeBlock.Builder code = CodeBlock.builder();
+        int start = 0;
+        int open;
+        while ((open = path.indexOf('{', start)) >= 0) {
+            int close = path.indexOf('}', open);
+            code.add(start == 0 ? "$S + $L" : " + $S + $L", path.substring(start, open), values.get(path.substring(open + 1, close).replace("+", "")));
+            start = close + 1;
+        }
+        if (start == 0) {
+            return code.add("$S", path).build();
+        }
+        if (start < path.length()) {
+            code.add(" + $S", path.substring(start));
+        }
+        return code.build();
+    }
+
+    /**
+     * The connection handling shared by the clients of all groups.
+     */
+    JavaFile apiClient() {
+        ClassName self = ClassName.get(packageName, API_CLIENT);
+        ClassName exception = self.nestedClass("ApiException");
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeName values = ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), WildcardTypeName.subtypeOf(Object.class));
+
+        MethodSpec.Builder defaultConstructor = MethodSpec.constructorBuilder()
+            .addJavadoc("A client with a default mapper, a pool of $L connections and gzip compression.\n", DEFAULT_POOL_SIZE)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(String.class, "baseUrl", Modifier.FINAL);
+        if (module != null) {
+            defaultConstructor.addStatement("this(baseUrl, new $T().findAndRegisterModules().registerModule(new $T()), $L, true)", ObjectMapper.class, module, DEFAULT_POOL_SIZE);
+        } else {
+            defaultConstructor.addStatement("this(baseUrl, new $T().findAndRegisterModules(), $L, true)", ObjectMapper.class, DEFAULT_POOL_SIZE);
+        }
+
+        TypeSpec client = TypeSpec.classBuilder(self)
+            .addJavadoc("Sends requests over persistent connections, at most {@code poolSize} at a time.\n\n"
+                + "<p>The JDK keeps at most {@code http.maxConnections} idle connections per host alive,\n"
+                + "set that system property to the pool size to keep all pooled connections alive.</p>\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(generated())
+            .addField(String.class, "baseUrl", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(ObjectMapper.class, "mapper", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(Semaphore.class, "connections", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(boolean.class, "gzip", Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(defaultConstructor.build())
+            .addMethod(MethodSpec.constructorBuilder()
+                .addJavadoc("@param baseUrl the url the paths of the operations are relative to\n"
+                    + "@param mapper reads and writes the bodies\n"
+                    + "@param poolSize the number of requests in flight at a time\n"
+                    + "@param gzip compress request bodies and accept compressed responses\n")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(String.class, "baseUrl", Modifier.FINAL)
+                .addParameter(ObjectMapper.class, "mapper", Modifier.FINAL)
+                .addParameter(int.class, "poolSize", Modifier.FINAL)
+                .addParameter(boolean.class, "gzip", Modifier.FINAL)
+                .addStatement("this.baseUrl = baseUrl.endsWith($S) ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl", "/")
+                .addStatement("this.mapper = mapper")
+                .addStatement("this.connections = new $T(poolSize)", Semaphore.class)
+                .addStatement("this.gzip = gzip")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("send")
+                .addJavadoc("Sends a request and reads the response into the given type.\n\n"
+                    + "@param body a model, or an {@link InputStream} copied as is, null if there is none\n"
+                    + "@param response the type of the response, null to ignore it\n"
+                    + "@throws ApiException if the response status is 400 or above\n")
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(t)
+                .addParameter(String.class, "method", Modifier.FINAL)
+                .addParameter(String.class, "path", Modifier.FINAL)
+                .addParameter(values, "query", Modifier.FINAL)
+                .addParameter(values, "headers", Modifier.FINAL)
+                .addParameter(Object.class, "body", Modifier.FINAL)
+                .addParameter(String.class, "contentType", Modifier.FINAL)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(TypeReference.class), t), "response", Modifier.FINAL)
+                .returns(t)
+                .addException(IOException.class)
+                .addStatement("$T url = new $T(baseUrl + path + query(query))", URL.class, URL.class)
+                .beginControlFlow("try")
+                .addStatement("connections.acquire()")
+                .nextControlFlow("catch ($T e)", InterruptedException.class)
+                .addStatement("Thread.currentThread().interrupt()")
+                .addStatement("throw new $T(method + $S + path)", InterruptedIOException.class, " ")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("$T connection = ($T) url.openConnection()", HttpURLConnection.class, HttpURLConnection.class)
+                .addStatement("connection.setRequestMethod(method)")
+                .addStatement("connection.setRequestProperty($S, $S)", "Accept", ApiOperation.JSON)
+                .beginControlFlow("if (gzip)")
+                .addStatement("connection.setRequestProperty($S, $S)", "Accept-Encoding", "gzip")
+                .endControlFlow()
+                .beginControlFlow("for ($T<$T, ?> header : headers.entrySet())", Map.Entry.class, String.class)
+                .beginControlFlow("if (header.getValue() != null)")
+                .addStatement("connection.setRequestProperty(header.getKey(), String.valueOf(header.getValue()))")
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("if (body != null)")
+                .addStatement("write(connection, body, contentType)")
+                .endControlFlow()
+                .addStatement("int status = connection.getResponseCode()")
+                .beginControlFlow("if (status >= 400)")
+                .addStatement("throw new $T(status, method + $S + path + $S + error(connection))", exception, " ", ": ")
+                .endControlFlow()
+                .addStatement("return read(connection, response)")
+                .nextControlFlow("finally")
+                .addStatement("connections.release()")
+                .endControlFlow()
+                .build())
+            .addMethod(MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(HttpURLConnection.class, "connection", Modifier.FINAL)
+                .addParameter(Object.class, "body", Modifier.FINAL)
+                .addParameter(String.class, "contentType", Modifier.FINAL)
+                .addException(IOException.class)
+                .addStatement("connection.setDoOutput(true)")
+                .addStatement("connection.setRequestProperty($S, contentType)", "Content-Type")
+                .beginControlFlow("if (gzip)")
+                .addStatement("connection.setRequestProperty($S, $S)", "Content-Encoding", "gzip")
+                .endControlFlow()
+                .addComment("chunked so that the body is not buffered to compute its length")
+                .addStatement("connection.setChunkedStreamingMode(0)")
+                .beginControlFlow("try ($T output = gzip ? new $T(connection.getOutputStream()) : connection.getOutputStream())", OutputStream.class, GZIPOutputStream.class)
+                .beginControlFlow("if (body instanceof $T)", InputStream.class)
+                .addStatement("copy(($T) body, output)", InputStream.class)
+                .nextControlFlow("else")
+                .addStatement("mapper.writeValue(output, body)")
+                .endControlFlow()
+                .endControlFlow()
+                .build())
+            .addMethod(MethodSpec.methodBuilder("read")
+                .addModifiers(Modifier.PRIVATE)
+                .addTypeVariable(t)
+                .addParameter(HttpURLConnection.class, "connection", Modifier.FINAL)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(TypeReference.class), t), "response", Modifier.FINAL)
+                .returns(t)
+                .addException(IOException.class)
+                .addComment("read to the end and closed, the connection goes back to the keep-alive cache")
+                .beginControlFlow("try ($T input = decoded(connection, connection.getInputStream()))", InputStream.class)
+                .addStatement("$T result = null", t)
+                .beginControlFlow("if (response != null && connection.getResponseCode() != $T.HTTP_NO_CONTENT)", HttpURLConnection.class)
+                .addStatement("$T parser = mapper.getFactory().createParser(input)", JsonParser.class)
+                .addStatement("parser.disable($T.Feature.AUTO_CLOSE_SOURCE)", JsonParser.class)
+                .addStatement("result = mapper.readValue(parser, response)")
+                .endControlFlow()
+                .addStatement("copy(input, null)")
+                .addStatement("return result")
+                .endControlFlow()
+                .build())
+            .addMethod(MethodSpec.methodBuilder("error")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(HttpURLConnection.class, "connection", Modifier.FINAL)
+                .returns(String.class)
+                .addException(IOException.class)
+                .beginControlFlow("if (connection.getErrorStream() == null)")
+                .addStatement("return connection.getResponseMessage()")
+                .endControlFlow()
+                .beginControlFlow("try ($T input = decoded(connection, connection.getErrorStream()))", InputStream.class)
+                .addStatement("$T message = new $T()", ByteArrayOutputStream.class, ByteArrayOutputStream.class)
+                .addStatement("copy(input, message)")
+                .addStatement("return new String(message.toByteArray(), $T.UTF_8)", StandardCharsets.class)
+                .endControlFlow()
+                .build())
+            .addMethod(MethodSpec.methodBuilder("decoded")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(HttpURLConnection.class, "connection", Modifier.FINAL)
+                .addParameter(InputStream.class, "input", Modifier.FINAL)
+                .returns(InputStream.class)
+                .addException(IOException.class)
+                .addStatement("return $S.equalsIgnoreCase(connection.getContentEncoding()) ? new $T(input) : input", "gzip", GZIPInputStream.class)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("copy")
+                .addJavadoc("Copies the input to the output, or skips it if the output is null.\n")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(InputStream.class, "input", Modifier.FINAL)
+                .addParameter(OutputStream.class, "output", Modifier.FINAL)
+                .addException(IOException.class)
+                .addStatement("byte[] buffer = new byte[8192]")
+                .addStatement("int read")
+                .beginControlFlow("while ((read = input.read(buffer)) >= 0)")
+                .beginControlFlow("if (output != null)")
+                .addStatement("output.write(buffer, 0, read)")
+                .endControlFlow()
+                .endControlFlow()
+                .build())
+            .addMethod(MethodSpec.methodBuilder("query")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(values, "query", Modifier.FINAL)
+                .returns(String.class)
+                .addException(IOException.class)
+                .addStatement("$T result = new $T()", StringBuilder.class, StringBuilder.class)
+                .beginControlFlow("for ($T<$T, ?> parameter : query.entrySet())", Map.Entry.class, String.class)
+                .addStatement("$T<?> values = parameter.getValue() instanceof $T ? ($T<?>) parameter.getValue() : $T.singleton(parameter.getValue())",
+                    Collection.class, Collection.class, Collection.class, Collections.class)
+                .beginControlFlow("for (Object value : values)")
+                .beginControlFlow("if (value != null)")
+                .addStatement("result.append(result.length() == 0 ? '?' : '&').append(encode(parameter.getKey())).append('=').append(encode(value))")
+                .endControlFlow()
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return result.toString()")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("encode")
+                .addJavadoc("The value encoded as a path segment or query value.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Object.class, "value", Modifier.FINAL)
+                .returns(String.class)
+                .addException(IOException.class)
+                .addStatement("return $T.encode(String.valueOf(value), $S).replace($S, $S)", URLEncoder.class, "UTF-8", "+", "%20")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("encodePath")
+                .addJavadoc("The value encoded as a sequence of path segments, keeping its slashes.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Object.class, "value", Modifier.FINAL)
+                .returns(String.class)
+                .addException(IOException.class)
+                .addStatement("return encode(value).replace($S, $S)", "%2F", "/")
+                .build())
+            .addType(TypeSpec.classBuilder(exception)
+                .addJavadoc("A response with an error status.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .superclass(IOException.class)
+                .addField(int.class, "status", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                    .addParameter(int.class, "status", Modifier.FINAL)
+                    .addParameter(String.class, "message", Modifier.FINAL)
+                    .addStatement("super(status + $S + message)", " ")
+                    .addStatement("this.status = status")
+                    .build())
+                .addMethod(MethodSpec.methodBuilder("status")
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(int.class)
+                    .addStatement("return status")
+                    .build())
+                .build())
+            .build();
+
+        return javaFile(client);
+    }
+
+    private static AnnotationSpec generated() {
+        return AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build();
+    }
+
+    private JavaFile javaFile(final TypeSpec spec) {
+        return JavaFile.builder(packageName, spec)
+            .skipJavaLangImports(true)
+            .build();
+    }
+}
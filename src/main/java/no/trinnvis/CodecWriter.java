@@ -0,0 +1,317 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.base.CaseFormat;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import javax.annotation.Generated;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates a streaming {@code JsonSerializer}/{@code JsonDeserializer} pair per model and a Jackson module
+ * registering them, so that models are bound without reflection.
+ */
+final class CodecWriter {
+
+    static final String MODULE_NAME = "ModelCodecsModule";
+
+    /**
+     * The suffix of the accessors of a property that is held as the string that was read.
+     */
+    static final String RAW_SUFFIX = "Raw";
+
+    private static final Map<TypeName, String> WRITERS;
+    private static final Map<TypeName, String> PARSERS;
+
+    static {
+        Map<TypeName, String> writers = new HashMap<>();
+        Map<TypeName, String> parsers = new HashMap<>();
+        writers.put(ClassName.get(String.class), "writeString");
+        writers.put(ClassName.get(Boolean.class), "writeBoolean");
+        writers.put(ClassName.get(Integer.class), "writeNumber");
+        writers.put(ClassName.get(Long.class), "writeNumber");
+        writers.put(ClassName.get(Double.class), "writeNumber");
+        writers.put(ClassName.get(Float.class), "writeNumber");
+
+        parsers.put(ClassName.get(String.class), "_parseString");
+        parsers.put(ClassName.get(Boolean.class), "_parseBooleanPrimitive");
+        parsers.put(ClassName.get(Integer.class), "_parseIntPrimitive");
+        parsers.put(ClassName.get(Long.class), "_parseLongPrimitive");
+        parsers.put(ClassName.get(Double.class), "_parseDoublePrimitive");
+        parsers.put(ClassName.get(Float.class), "_parseFloatPrimitive");
+
+        WRITERS = Collections.unmodifiableMap(writers);
+        PARSERS = Collections.unmodifiableMap(parsers);
+    }
+
+    private final String packageName;
+    private final Predicate<TypeName> isEnum;
+
+    /**
+     * @param packageName the package of the generated codecs
+     * @param isEnum whether a type is a generated enum, sets of these are read straight into an {@link EnumSet}
+     */
+    CodecWriter(final String packageName, final Predicate<TypeName> isEnum) {
+        this.packageName = packageName;
+        this.isEnum = isEnum;
+    }
+
+    ClassName serializerOf(final ClassName model) {
+        return ClassName.get(packageName, model.simpleName() + "Serializer");
+    }
+
+    ClassName deserializerOf(final ClassName model) {
+        return ClassName.get(packageName, model.simpleName() + "Deserializer");
+    }
+
+    /**
+     * @param properties the property names of the model and their types, in declaration order
+     * @param additionalProperties whether the model collects additional properties
+     * @param raw whether properties of a type are held as the string that was read, through the {@link #RAW_SUFFIX} accessors
+     */
+    List<JavaFile> codecs(final ClassName model, final Map<String, TypeName> properties, final boolean additionalProperties, final Predicate<TypeName> raw) {
+        return Arrays.asList(
+            javaFile(serializer(model, properties, additionalProperties, raw)),
+            javaFile(deserializer(model, properties, additionalProperties, raw)));
+    }
+
+    JavaFile module(final Collection<ClassName> models) {
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PUBLIC)
+            .addStatement("super($S)", MODULE_NAME);
+
+        for (ClassName model : models) {
+            constructor.addStatement("addSerializer($T.class, new $T())", model, serializerOf(model));
+            constructor.addStatement("addDeserializer($T.class, new $T())", model, deserializerOf(model));
+        }
+
+        TypeSpec spec = TypeSpec.classBuilder(MODULE_NAME)
+            .addJavadoc("Registers the generated serializers and deserializers of all models.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .superclass(SimpleModule.class)
+            .addMethod(constructor.build())
+            .addAnnotation(generated())
+            .build();
+
+        return javaFile(spec);
+    }
+
+    private TypeSpec serializer(final ClassName model, final Map<String, TypeName> properties, final boolean additionalProperties, final Predicate<TypeName> raw) {
+        ClassName name = serializerOf(model);
+        TypeSpec.Builder builder = TypeSpec.classBuilder(name)
+            .addJavadoc("Writes {@link $T} without reflection.\n", model)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .superclass(ParameterizedTypeName.get(ClassName.get(StdSerializer.class), model))
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("super($T.class)", model)
+                .build());
+
+        CodeBlock.Builder body = CodeBlock.builder()
+            .addStatement("gen.writeStartObject()");
+
+        properties.forEach((property, type) -> {
+            String constant = constantName(property);
+            builder.addField(FieldSpec.builder(SerializableString.class, constant, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($S)", SerializedString.class, property)
+                .build());
+
+            String getter = getterName(property, type) + "()";
+            body.addStatement("gen.writeFieldName($N)", constant);
+            if (raw.test(type)) {
+                body.addStatement("gen.writeString(value.$L$L())", getterName(property, type), RAW_SUFFIX);
+            } else if (type.equals(ClassName.get(String.class))) {
+                body.addStatement("gen.writeString(value.$L)", getter);
+            } else if (type.isPrimitive()) {
+                body.addStatement("gen.$L(value.$L)", WRITERS.get(type.box()), getter);
+            } else if (isPrimitiveArray(type)) {
+                body.addStatement("$T $N = value.$L", type, localName(property), getter)
+                    .beginControlFlow("if ($N == null)", localName(property))
+                    .addStatement("gen.writeNull()")
+                    .nextControlFlow("else")
+                    .addStatement("gen.writeArray($N, 0, $N.length)", localName(property), localName(property))
+                    .endControlFlow();
+            } else if (WRITERS.containsKey(type)) {
+                body.addStatement("$T $N = value.$L", type, localName(property), getter)
+                    .beginControlFlow("if ($N == null)", localName(property))
+                    .addStatement("gen.writeNull()")
+                    .nextControlFlow("else")
+                    .addStatement("gen.$L($N)", WRITERS.get(type), localName(property))
+                    .endControlFlow();
+            } else {
+                body.addStatement("provider.defaultSerializeValue(value.$L, gen)", getter);
+            }
+        });
+
+        if (additionalProperties) {
+            body.beginControlFlow("for ($T<$T, $T> entry : value.getAdditionalProperties().entrySet())", Map.Entry.class, String.class, Object.class)
+                .addStatement("gen.writeFieldName(entry.getKey())")
+                .addStatement("provider.defaultSerializeValue(entry.getValue(), gen)")
+                .endControlFlow();
+        }
+
+        body.addStatement("gen.writeEndObject()");
+
+        return builder
+            .addMethod(MethodSpec.methodBuilder("serialize")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(model, "value", Modifier.FINAL)
+                .addParameter(JsonGenerator.class, "gen", Modifier.FINAL)
+                .addParameter(SerializerProvider.class, "provider", Modifier.FINAL)
+                .addException(IOException.class)
+                .addCode(body.build())
+                .build())
+            .addAnnotation(generated())
+            .build();
+    }
+
+    private TypeSpec deserializer(final ClassName model, final Map<String, TypeName> properties, final boolean additionalProperties, final Predicate<TypeName> raw) {
+        ClassName name = deserializerOf(model);
+        ClassName builderType = model.nestedClass(model.simpleName() + "Builder");
+
+        TypeSpec.Builder builder = TypeSpec.classBuilder(name)
+            .addJavadoc("Reads {@link $T} without reflection.\n", model)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .superclass(ParameterizedTypeName.get(ClassName.get(StdDeserializer.class), model))
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("super($T.class)", model)
+                .build());
+
+        CodeBlock.Builder body = CodeBlock.builder()
+            .addStatement("$T token = p.getCurrentToken()", JsonToken.class)
+            .beginControlFlow("if (token == $T.START_OBJECT)", JsonToken.class)
+            .addStatement("token = p.nextToken()")
+            .nextControlFlow("else if (token != $T.FIELD_NAME && token != $T.END_OBJECT)", JsonToken.class, JsonToken.class)
+            .addStatement("return ($T) ctxt.handleUnexpectedToken($T.class, p)", model, model)
+            .endControlFlow()
+            .addStatement("$T builder = $T.builder()", builderType, model)
+            .beginControlFlow("for (; token == $T.FIELD_NAME; token = p.nextToken())", JsonToken.class)
+            .addStatement("$T field = p.getCurrentName()", String.class)
+            .addStatement("boolean isNull = p.nextToken() == $T.VALUE_NULL", JsonToken.class)
+            .beginControlFlow("switch (field)");
+
+        properties.forEach((property, type) -> {
+            body.add("case $S:\n", property).indent();
+            if (raw.test(type)) {
+                body.addStatement("builder.$N(isNull ? null : _parseString(p, ctxt))", property + RAW_SUFFIX);
+            } else if (type.isPrimitive()) {
+                body.addStatement("builder.$N($L(p, ctxt))", property, PARSERS.get(type.box()));
+            } else if (PARSERS.containsKey(type)) {
+                body.addStatement("builder.$N(isNull ? null : $L(p, ctxt))", property, PARSERS.get(type));
+            } else {
+                String constant = constantName(property) + "_TYPE";
+                builder.addField(FieldSpec.builder(JavaType.class, constant, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.defaultInstance().constructType(new $T<$T>() { })", TypeFactory.class, TypeReference.class, readType(type))
+                    .build());
+                body.addStatement("builder.$N(isNull ? null : ctxt.<$T>readValue(p, $N))", property, type, constant);
+            }
+            body.addStatement("break").unindent();
+        });
+
+        body.add("default:\n").indent();
+        if (additionalProperties) {
+            body.addStatement("builder.addSingleProperty(field, isNull ? null : ctxt.readValue(p, $T.class))", Object.class);
+        } else {
+            body.addStatement("ctxt.handleUnknownProperty(p, this, $T.class, field)", model);
+        }
+        body.addStatement("break").unindent();
+
+        body.endControlFlow()
+            .endControlFlow()
+            .addStatement("return builder.build()");
+
+        return builder
+            .addMethod(MethodSpec.methodBuilder("deserialize")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(model)
+                .addParameter(JsonParser.class, "p", Modifier.FINAL)
+                .addParameter(DeserializationContext.class, "ctxt", Modifier.FINAL)
+                .addException(IOException.class)
+                .addCode(body.build())
+                .build())
+            .addAnnotation(generated())
+            .build();
+    }
+
+    /**
+     * The type Jackson should bind a property as, an {@link EnumSet} for sets of generated enums.
+     */
+    private TypeName readType(final TypeName type) {
+        if (type instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterized = (ParameterizedTypeName) type;
+            TypeName item = parameterized.typeArguments.get(0);
+            if (parameterized.rawType.equals(ClassName.get(Set.class)) && isEnum.test(item)) {
+                return ParameterizedTypeName.get(ClassName.get(EnumSet.class), item);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Whether the type is an array JsonGenerator can write directly.
+     */
+    private static boolean isPrimitiveArray(final TypeName type) {
+        if (!(type instanceof ArrayTypeName)) {
+            return false;
+        }
+
+        TypeName componentType = ((ArrayTypeName) type).componentType;
+        return componentType.equals(TypeName.INT) || componentType.equals(TypeName.LONG) || componentType.equals(TypeName.DOUBLE);
+    }
+
+    private JavaFile javaFile(final TypeSpec spec) {
+        return JavaFile.builder(packageName, spec)
+            .skipJavaLangImports(true)
+            .build();
+    }
+
+    private static AnnotationSpec generated() {
+        return AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build();
+    }
+
+    static String getterName(final String property, final TypeName type) {
+        String prefix = type.equals(ClassName.get(Boolean.class)) ? "is" : "get";
+        return prefix + property.substring(0, 1).toUpperCase() + property.substring(1);
+    }
+
+    private static String constantName(final String property) {
+        return CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, property);
+    }
+
+    private static String localName(final String property) {
+        return property + "Value";
+    }
+}
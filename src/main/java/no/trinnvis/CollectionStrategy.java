@@ -0,0 +1,18 @@
+package no.trinnvis;
+
+/**
+ * How generated models hold their array properties.
+ */
+enum CollectionStrategy {
+
+    /**
+     * Builders start from an empty {@code HashSet} or {@code ArrayList} and models keep the builder's collection.
+     */
+    DEFAULT,
+
+    /**
+     * Builders allocate nothing until a collection is set, and models keep a right-sized unmodifiable copy,
+     * or a shared empty collection when there are no items.
+     */
+    COMPACT
+}
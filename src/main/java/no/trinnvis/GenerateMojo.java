@@ -1,8 +1,23 @@
 package no.trinnvis;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -10,13 +25,16 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 /**
- * Says "Hi" to the user.
- *
- *
+ * Generates models, and optionally resources, codecs and clients, from OpenAPI specifications and adds them to the
+ * compile source roots. Nothing is generated while the specifications, the files they reference and the
+ * configuration are unchanged since the last run.
  */
-@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES)
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
 public class GenerateMojo extends AbstractMojo
 {
+    static final String FINGERPRINT_FILE = ".openapi-generator.fingerprint";
+    static final String SOURCE_FOLDER = "src/main/java";
+
     /**
      * Location of the output directory.
      */
@@ -32,26 +50,382 @@ public class GenerateMojo extends AbstractMojo
         defaultValue = "${project.basedir}/src/main/openapi/openapi.yaml")
     private File input;
 
+    /**
+     * Package of the generated models, resources, codecs and clients go in packages below it.
+     */
+    @Parameter(name = "packageName",
+        property = "swagger.codegen.maven.plugin.packageName",
+        defaultValue = OpenApiGenerator.DEFAULT_PACKAGE)
+    private String packageName;
+
+    /**
+     * Specifications generated together, each in its own package, instead of the single input. Each spec has an
+     * input file or glob and a packageName, where {name} stands for the file name of the specification.
+     */
+    @Parameter(name = "specs")
+    private List<Spec> specs = new ArrayList<>();
+
+    /**
+     * Package of the schemas that several specs declare alike, generated once. Defaults to packageName.shared.
+     */
+    @Parameter(name = "sharedPackageName",
+        property = "swagger.codegen.maven.plugin.sharedPackageName")
+    private String sharedPackageName;
+
+    /**
+     * Regenerate even if the input specification has not changed since the last run.
+     */
+    @Parameter(name = "force",
+        property = "swagger.codegen.maven.plugin.force",
+        defaultValue = "false")
+    private boolean force;
+
+    /**
+     * Generate a streaming Jackson serializer and deserializer per model, registered by a generated module.
+     */
+    @Parameter(name = "codecs",
+        property = "swagger.codegen.maven.plugin.codecs",
+        defaultValue = "false")
+    private boolean codecs;
+
+    /**
+     * Generate required numeric properties as primitives and numeric arrays as primitive arrays.
+     */
+    @Parameter(name = "primitiveNumbers",
+        property = "swagger.codegen.maven.plugin.primitiveNumbers",
+        defaultValue = "false")
+    private boolean primitiveNumbers;
+
+    /**
+     * How models hold array properties, DEFAULT or COMPACT (lazy, right-sized and unmodifiable).
+     */
+    @Parameter(name = "collections",
+        property = "swagger.codegen.maven.plugin.collections",
+        defaultValue = "DEFAULT")
+    private CollectionStrategy collections;
+
+    /**
+     * Keep date and time properties as the string that was read and parse them on first access.
+     */
+    @Parameter(name = "lazyTemporals",
+        property = "swagger.codegen.maven.plugin.lazyTemporals",
+        defaultValue = "false")
+    private boolean lazyTemporals;
+
+    /**
+     * How resource methods hand back their result, ASYNC_RESPONSE, COMPLETION_STAGE, which needs JAX-RS 2.1, or SYNCHRONOUS.
+     */
+    @Parameter(name = "resourceStyle",
+        property = "swagger.codegen.maven.plugin.resourceStyle",
+        defaultValue = "ASYNC_RESPONSE")
+    private ResourceStyle resourceStyle;
+
+    /**
+     * Tags whose operations are generated as synchronous resource methods whatever the resourceStyle.
+     */
+    @Parameter(name = "synchronousTags",
+        property = "swagger.codegen.maven.plugin.synchronousTags")
+    private List<String> synchronousTags = new ArrayList<>();
+
+    /**
+     * Stream every array response element by element, otherwise only operations with x-streaming: true are streamed.
+     */
+    @Parameter(name = "streamArrays",
+        property = "swagger.codegen.maven.plugin.streamArrays",
+        defaultValue = "false")
+    private boolean streamArrays;
+
+    /**
+     * Also generate an http client per resource, sharing pooled keep-alive connections.
+     */
+    @Parameter(name = "clients",
+        property = "swagger.codegen.maven.plugin.clients",
+        defaultValue = "false")
+    private boolean clients;
+
+    /**
+     * Regenerate only the models affected by schema changes since the previous run.
+     */
+    @Parameter(name = "incremental",
+        property = "swagger.codegen.maven.plugin.incremental",
+        defaultValue = "true")
+    private boolean incremental;
+
+    /**
+     * Number of threads used to emit models and enums, or to generate specs when there are several.
+     */
+    @Parameter(name = "threads",
+        property = "swagger.codegen.maven.plugin.threads",
+        defaultValue = "1")
+    private int threads;
+
+    /**
+     * Write the generator timings and counters as JSON to metricsReport.
+     */
+    @Parameter(name = "writeMetricsReport",
+        property = "swagger.codegen.maven.plugin.writeMetricsReport",
+        defaultValue = "false")
+    private boolean writeMetricsReport;
+
+    /**
+     * Location of the JSON metrics report.
+     */
+    @Parameter(name = "metricsReport",
+        property = "swagger.codegen.maven.plugin.metricsReport",
+        defaultValue = "${project.build.directory}/openapi-generator-metrics.json")
+    private File metricsReport;
+
+    /**
+     * Folder of the snapshots of parsed specifications, read instead of parsing an unchanged specification again.
+     */
+    @Parameter(name = "snapshotDirectory",
+        property = "swagger.codegen.maven.plugin.snapshotDirectory",
+        defaultValue = "${project.build.directory}/openapi-snapshots")
+    private File snapshotDirectory;
+
     /**
      * The project being built.
      */
     @Parameter(readonly = true, required = true, defaultValue = "${project}")
     private MavenProject project;
 
+    /**
+     * The descriptor of this plugin, used for its version.
+     */
+    @Parameter(readonly = true, defaultValue = "${plugin}")
+    private PluginDescriptor plugin;
+
 
     public void execute() throws MojoExecutionException
+    {
+        generate();
+
+        if (project != null) {
+            project.addCompileSourceRoot(output.toString() + "/" + SOURCE_FOLDER);
+        }
+
+    }
+
+    /**
+     * Generates the sources unless they are up to date.
+     *
+     * @return the fingerprint of what the sources were generated from
+     */
+    GenerationFingerprint generate() throws MojoExecutionException
     {
         getLog().info( "Generate API model from open api definition" );
-        getLog().info( "Input " + input.getAbsolutePath() );
+
+        Map<File, String> packages = packages();
+        packages.forEach((file, name) -> getLog().info( "Input " + file.getAbsolutePath() + " in " + name ));
         getLog().info( "Output " + output.getAbsolutePath() );
 
-        OpenApiGenerator generator = new OpenApiGenerator(output, input);
-        generator.execute();
+        String sourceJavaFolder = output.toString() + "/" + SOURCE_FOLDER;
+        Optional<Path> foreignRoot = foreignSourceRoot(sourceJavaFolder);
+        foreignRoot.ifPresent(root -> getLog().warn( "Sources that are no longer generated are kept, since the output overlaps the source root " + root ));
+
+        File fingerprintFile = new File(output, FINGERPRINT_FILE);
+        GenerationFingerprint fingerprint = fingerprint(packages);
+
+        if (!force && new File(sourceJavaFolder).isDirectory() && isUpToDate(fingerprint, fingerprintFile)) {
+            getLog().info( "Generated sources are up to date" );
+        } else {
+            GenerationMetrics metrics;
+            try {
+                // a run that fails part way must not leave the previous fingerprint claiming the sources are current
+                Files.deleteIfExists(fingerprintFile.toPath());
+
+                if (specs.isEmpty()) {
+                    OpenApiGenerator generator = new OpenApiGenerator(output, input, threads, packageName);
+                    generator.log(getLog());
+                    configure(generator);
+                    generator.snapshots(snapshotDirectory);
+                    generator.pruneOrphans(!foreignRoot.isPresent());
+                    if (incremental && !force) {
+                        generator.incremental(fingerprint.configuration());
+                    }
+                    generator.execute();
+                    metrics = generator.metrics();
+                } else {
+                    GenerationSession session = new GenerationSession(output, sharedPackageName(), threads);
+                    packages.forEach(session::add);
+                    session.log(getLog());
+                    session.snapshots(snapshotDirectory);
+                    session.pruneOrphans(!foreignRoot.isPresent());
+                    if (incremental && !force) {
+                        session.incremental(fingerprint.configuration());
+                    }
+                    session.execute(this::configure);
+                    metrics = session.metrics();
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to generate from " + packages.keySet(), e);
+            }
+
+            try {
+                fingerprint.store(fingerprintFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + fingerprintFile, e);
+            }
+
+            report(metrics);
+        }
+
+        return fingerprint;
+    }
+
+    private void configure(final OpenApiGenerator generator) {
+        generator.codecs(codecs);
+        generator.primitiveNumbers(primitiveNumbers);
+        generator.collections(collections);
+        generator.lazyTemporals(lazyTemporals);
+        generator.resources(resourceStyle, synchronousTags, streamArrays);
+        generator.clients(clients);
+    }
+
+    /**
+     * The specifications to generate and the package of each, the input alone unless specs are configured.
+     */
+    private Map<File, String> packages() throws MojoExecutionException {
+        Map<File, String> packages = new LinkedHashMap<>();
+        if (specs.isEmpty()) {
+            packages.put(input, packageName);
+            return packages;
+        }
+
+        Map<String, File> files = new HashMap<>();
+        for (Spec spec : specs) {
+            if (spec.getInput() == null) {
+                throw new MojoExecutionException("A spec has no input");
+            }
+            if (spec.getPackageName() == null) {
+                throw new MojoExecutionException("The spec " + spec.getInput() + " has no packageName");
+            }
+
+            List<File> matched;
+            try {
+                matched = spec.files(baseDirectory());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to list " + spec.getInput(), e);
+            }
+            if (matched.isEmpty()) {
+                throw new MojoExecutionException("No specification matches " + spec.getInput());
+            }
+
+            for (File file : matched) {
+                String name = spec.packageOf(file);
+                File other = files.put(name, file);
+                if (other != null && !other.equals(file)) {
+                    throw new MojoExecutionException(other + " and " + file + " are both generated in " + name);
+                }
+                if (name.equals(sharedPackageName())) {
+                    throw new MojoExecutionException(file + " is generated in the shared package " + name);
+                }
+                packages.putIfAbsent(file, name);
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * A compile source root of the project, other than the one the plugin adds, that contains or lies within the
+     * generated sources. Orphans are not deleted there, since the sources may be hand-written.
+     */
+    private Optional<Path> foreignSourceRoot(final String sourceJavaFolder) {
+        if (project == null) {
+            return Optional.empty();
+        }
+
+        Set<String> roots = new LinkedHashSet<>();
+        roots.addAll(project.getCompileSourceRoots());
+        roots.addAll(project.getTestCompileSourceRoots());
+        roots.remove(sourceJavaFolder);
+        if (project.getBuild() != null) {
+            // the configured source folders hold hand-written sources even when the output is the project itself
+            roots.add(project.getBuild().getSourceDirectory());
+            roots.add(project.getBuild().getTestSourceDirectory());
+        }
+
+        Path sources = sourceRoot(sourceJavaFolder);
+        return roots.stream()
+            .filter(Objects::nonNull)
+            .map(this::sourceRoot)
+            .filter(root -> sources.startsWith(root) || root.startsWith(sources))
+            .findFirst();
+    }
+
+    private Path sourceRoot(final String root) {
+        File file = new File(root);
+        return (file.isAbsolute() ? file : new File(baseDirectory(), root)).toPath().normalize();
+    }
+
+    private String sharedPackageName() {
+        return sharedPackageName != null ? sharedPackageName : packageName + ".shared";
+    }
+
+    private void report(final GenerationMetrics metrics) throws MojoExecutionException {
+        metrics.summary().forEach(line -> getLog().info( line ));
+
+        if (writeMetricsReport) {
+            try {
+                metrics.writeJson(metricsReport);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + metricsReport, e);
+            }
+        }
+    }
+
+    private GenerationFingerprint fingerprint(final Map<File, String> packages) throws MojoExecutionException {
+        try {
+            return GenerationFingerprint.of(packages.keySet(), plugin != null ? plugin.getVersion() : null, configuration(packages));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + packages.keySet(), e);
+        }
+    }
 
-        final String sourceFolder =  "src/main/java";
+    private boolean isUpToDate(final GenerationFingerprint fingerprint, final File fingerprintFile) throws MojoExecutionException {
+        try {
+            return fingerprint.matches(fingerprintFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + fingerprintFile, e);
+        }
+    }
 
-        String sourceJavaFolder = output.toString() + "/" + sourceFolder;
-        project.addCompileSourceRoot(sourceJavaFolder);
+    /**
+     * The parameters that affect the generated sources.
+     */
+    private Map<String, String> configuration(final Map<File, String> packages) {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("output", relative(output));
+        configuration.put("packageName", packageName);
+        if (!specs.isEmpty()) {
+            Map<String, String> specPackages = new TreeMap<>();
+            packages.forEach((file, name) -> specPackages.put(relative(file), name));
+            configuration.put("specs", String.valueOf(specPackages));
+            configuration.put("sharedPackageName", sharedPackageName());
+        }
+        configuration.put("codecs", String.valueOf(codecs));
+        configuration.put("primitiveNumbers", String.valueOf(primitiveNumbers));
+        configuration.put("collections", String.valueOf(collections));
+        configuration.put("lazyTemporals", String.valueOf(lazyTemporals));
+        configuration.put("resourceStyle", String.valueOf(resourceStyle));
+        configuration.put("synchronousTags", String.valueOf(new TreeSet<>(synchronousTags)));
+        configuration.put("streamArrays", String.valueOf(streamArrays));
+        configuration.put("clients", String.valueOf(clients));
+        return configuration;
+    }
 
+    /**
+     * The path relative to the project, so that the fingerprint does not depend on where the project is checked out.
+     */
+    private String relative(final File file) {
+        return baseDirectory().toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * The directory of the project, or the working directory when run without one.
+     */
+    private File baseDirectory() {
+        File basedir = project != null ? project.getBasedir() : null;
+        return (basedir != null ? basedir : new File("")).getAbsoluteFile();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A digest of everything the generated sources depend on: the input specifications, every file they
+ * reference through {@code $ref}, the plugin version and the generator configuration.
+ */
+final class GenerationFingerprint {
+
+    private static final Pattern EXTERNAL_REF = Pattern.compile("\\$ref[\"']?\\s*:\\s*[\"']?([^\"'#\\s,}]+)");
+
+    private final String value;
+    private final String configuration;
+    private final Set<File> files;
+
+    private GenerationFingerprint(final String value, final String configuration, final Set<File> files) {
+        this.value = value;
+        this.configuration = configuration;
+        this.files = files;
+    }
+
+    static GenerationFingerprint of(final File input, final String pluginVersion, final Map<String, String> configuration) throws IOException {
+        return of(Collections.singleton(input), pluginVersion, configuration);
+    }
+
+    static GenerationFingerprint of(final Collection<File> inputs, final String pluginVersion, final Map<String, String> configuration) throws IOException {
+        MessageDigest configurationDigest = newDigest();
+        update(configurationDigest, String.valueOf(pluginVersion).getBytes(StandardCharsets.UTF_8));
+        new TreeMap<>(configuration).forEach((k, v) -> {
+            update(configurationDigest, k.getBytes(StandardCharsets.UTF_8));
+            update(configurationDigest, String.valueOf(v).getBytes(StandardCharsets.UTF_8));
+        });
+        String configurationHash = hex(configurationDigest.digest());
+
+        Set<File> files = new LinkedHashSet<>();
+        MessageDigest digest = newDigest();
+        for (File input : inputs) {
+            Set<File> referenced = referencedFiles(input);
+            files.addAll(referenced);
+            update(digest, digest(input.getCanonicalFile().getParentFile(), referenced).getBytes(StandardCharsets.UTF_8));
+        }
+        update(digest, configurationHash.getBytes(StandardCharsets.UTF_8));
+
+        return new GenerationFingerprint(hex(digest.digest()), configurationHash, files);
+    }
+
+    /**
+     * The digest of the content of the files and their paths relative to the base directory, so that it does not
+     * depend on where the files are checked out.
+     */
+    static String digest(final File base, final Collection<File> files) throws IOException {
+        MessageDigest digest = newDigest();
+        for (File file : files) {
+            String path = base.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            update(digest, path.getBytes(StandardCharsets.UTF_8));
+            update(digest, Files.readAllBytes(file.toPath()));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Adds a field prefixed by its length, so that the boundaries between fields are part of the digest.
+     */
+    private static void update(final MessageDigest digest, final byte[] field) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(field.length).array());
+        digest.update(field);
+    }
+
+    /**
+     * The input specification followed by every local file reachable through {@code $ref}.
+     */
+    static Set<File> referencedFiles(final File input) throws IOException {
+        Set<File> files = new LinkedHashSet<>();
+        Deque<File> pending = new ArrayDeque<>();
+        pending.add(input.getCanonicalFile());
+
+        while (!pending.isEmpty()) {
+            File file = pending.poll();
+            if (!files.add(file)) {
+                continue;
+            }
+
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            Matcher matcher = EXTERNAL_REF.matcher(content);
+            while (matcher.find()) {
+                String ref = matcher.group(1);
+                if (ref.contains("://")) {
+                    continue;
+                }
+
+                File referenced = new File(file.getParentFile(), ref).getCanonicalFile();
+                if (referenced.isFile()) {
+                    pending.add(referenced);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * The digest of the plugin version and configuration alone.
+     */
+    String configuration() {
+        return configuration;
+    }
+
+    Set<File> files() {
+        return files;
+    }
+
+    boolean matches(final File stored) throws IOException {
+        if (!stored.isFile()) {
+            return false;
+        }
+
+        return value.equals(new String(Files.readAllBytes(stored.toPath()), StandardCharsets.UTF_8).trim());
+    }
+
+    void store(final File stored) throws IOException {
+        SourceWriter.writeAtomically(stored.toPath(), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(final byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
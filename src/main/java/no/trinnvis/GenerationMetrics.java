@@ -0,0 +1,123 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings of the generator phases and counters of what was generated. Counters may be updated from several threads.
+ */
+final class GenerationMetrics {
+
+    enum Phase {
+        PARSE, RESOLVE, MODELS, ENUMS, RESOURCES
+    }
+
+    private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+    private final AtomicInteger schemas = new AtomicInteger();
+    private final AtomicInteger models = new AtomicInteger();
+    private final AtomicInteger enums = new AtomicInteger();
+    private final AtomicInteger resources = new AtomicInteger();
+    private final AtomicInteger filesWritten = new AtomicInteger();
+    private final AtomicInteger filesSkipped = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    void time(final Phase phase, final Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            elapsed(phase, System.nanoTime() - start);
+        }
+    }
+
+    void elapsed(final Phase phase, final long elapsedNanos) {
+        synchronized (nanos) {
+            nanos.merge(phase, elapsedNanos, Long::sum);
+        }
+    }
+
+    void schemas(final int count) {
+        schemas.addAndGet(count);
+    }
+
+    void model() {
+        models.incrementAndGet();
+    }
+
+    void enumeration() {
+        enums.incrementAndGet();
+    }
+
+    void resource() {
+        resources.incrementAndGet();
+    }
+
+    void fileWritten(final long bytes) {
+        filesWritten.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+    }
+
+    void fileSkipped() {
+        filesSkipped.incrementAndGet();
+    }
+
+    long millis(final Phase phase) {
+        synchronized (nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.getOrDefault(phase, 0L));
+        }
+    }
+
+    int filesWritten() {
+        return filesWritten.get();
+    }
+
+    int filesSkipped() {
+        return filesSkipped.get();
+    }
+
+    /**
+     * A human readable summary, one line per entry.
+     */
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            lines.add(String.format("%-10s %6d ms", phase.name().toLowerCase(), millis(phase)));
+        }
+        lines.add(String.format("%d schemas, %d models, %d enums and %d resources generated",
+            schemas.get(), models.get(), enums.get(), resources.get()));
+        lines.add(String.format("%d files written (%d bytes), %d files unchanged",
+            filesWritten.get(), bytesWritten.get(), filesSkipped.get()));
+        return lines;
+    }
+
+    void writeJson(final File file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+
+        ObjectNode phases = root.putObject("phasesMillis");
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name().toLowerCase(), millis(phase));
+        }
+
+        root.put("schemas", schemas.get());
+        root.put("models", models.get());
+        root.put("enums", enums.get());
+        root.put("resources", resources.get());
+        root.put("filesWritten", filesWritten.get());
+        root.put("filesSkipped", filesSkipped.get());
+        root.put("bytesWritten", bytesWritten.get());
+
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+    }
+}
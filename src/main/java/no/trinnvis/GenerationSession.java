@@ -0,0 +1,220 @@
+package no.trinnvis;
+
+import com.squareup.javapoet.ClassName;
+import io.swagger.oas.models.Components;
+import io.swagger.oas.models.OpenAPI;
+import io.swagger.oas.models.media.Schema;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Generates several specifications into one output, each in its own package. The specifications are parsed and
+ * generated concurrently on a bounded pool of threads.
+ *
+ * <p>A component schema with the same name and content in every specification that declares it, and declared by
+ * more than one, is generated once in the shared package, provided the schemas it references are shared as well.
+ * Sources that none of the specifications generated are deleted once all of them are done.</p>
+ */
+final class GenerationSession {
+
+    private final File output;
+    private final String sharedPackage;
+    private final int threads;
+    private final Map<File, String> packages = new LinkedHashMap<>();
+    private final GenerationMetrics metrics = new GenerationMetrics();
+    private final SourceWriter writer;
+    private File snapshots;
+    private String configuration;
+    private Log log = new SystemStreamLog();
+    private boolean pruneOrphans = true;
+
+    /**
+     * @param sharedPackage the package of the schemas shared by several specifications
+     * @param threads the number of specifications parsed and generated at a time
+     */
+    GenerationSession(final File output, final String sharedPackage, final int threads) {
+        this.output = output;
+        this.sharedPackage = sharedPackage;
+        this.threads = Math.max(1, threads);
+        this.writer = new SourceWriter(Paths.get(output.getAbsolutePath(), "src/main/java"), metrics);
+    }
+
+    void add(final File input, final String packageName) {
+        packages.put(input, packageName);
+    }
+
+    /**
+     * Keeps a snapshot of each parsed specification in the folder, read instead of parsing it again.
+     */
+    void snapshots(final File snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Regenerates only the models affected by changes to the specifications since the previous run.
+     */
+    void incremental(final String configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Where the session and its generators report progress and warnings, the standard streams unless given.
+     */
+    void log(final Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Deletes the generated sources that none of the specifications wrote, true unless given.
+     */
+    void pruneOrphans(final boolean pruneOrphans) {
+        this.pruneOrphans = pruneOrphans;
+    }
+
+    GenerationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @param options applies the generator options to the generator of each specification and of the shared schemas
+     */
+    void execute(final Consumer<OpenApiGenerator> options) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<File> inputs = new ArrayList<>(packages.keySet());
+            List<Callable<SpecificationCache.Specification>> parsing = new ArrayList<>();
+            inputs.forEach(input -> parsing.add(() -> SpecificationCache.parse(input, snapshots)));
+
+            long start = System.nanoTime();
+            List<SpecificationCache.Specification> specifications = invokeAll(executor, parsing);
+            metrics.elapsed(GenerationMetrics.Phase.PARSE, System.nanoTime() - start);
+
+            for (int i = 0; i < inputs.size(); i++) {
+                if (specifications.get(i).openAPI() == null) {
+                    specifications.get(i).messages().forEach(log::error);
+                    throw new IOException("Unable to parse " + inputs.get(i));
+                }
+            }
+
+            Map<String, Schema> shared = sharedSchemas(specifications);
+            String sessionConfiguration = configuration != null ? configuration(shared.keySet()) : null;
+            List<Callable<Void>> generating = new ArrayList<>();
+
+            if (!shared.isEmpty()) {
+                log.info(shared.size() + " schemas are shared: " + shared.keySet());
+                OpenApiGenerator generator = new OpenApiGenerator(output, null, sharedPackage, writer);
+                generator.index(new OpenAPI().components(new Components().schemas(shared)));
+                generating.add(generation(generator, options, sessionConfiguration));
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                SpecificationCache.Specification specification = specifications.get(i);
+                Map<String, ClassName> external = new HashMap<>();
+                specification.openAPI().getComponents().getSchemas().keySet().stream()
+                    .filter(shared::containsKey)
+                    .forEach(name -> external.put(name, ClassName.get(sharedPackage, name)));
+
+                OpenApiGenerator generator = new OpenApiGenerator(output, inputs.get(i), packages.get(inputs.get(i)), writer);
+                generator.specification(specification);
+                generator.external(external);
+                generating.add(generation(generator, options, sessionConfiguration));
+            }
+
+            invokeAll(executor, generating);
+        } finally {
+            executor.shutdown();
+        }
+
+        if (pruneOrphans) {
+            writer.deleteOrphans().forEach(orphan -> log.info("Deleted " + orphan));
+        }
+    }
+
+    private Callable<Void> generation(final OpenApiGenerator generator, final Consumer<OpenApiGenerator> options, final String configuration) {
+        generator.log(log);
+        options.accept(generator);
+        if (configuration != null) {
+            generator.incremental(configuration);
+        }
+        return () -> {
+            generator.execute();
+            return null;
+        };
+    }
+
+    /**
+     * The schemas to generate in the shared package, by name.
+     */
+    static Map<String, Schema> sharedSchemas(final List<SpecificationCache.Specification> specifications) {
+        Map<String, Set<String>> hashes = new HashMap<>();
+        Map<String, Integer> declarations = new HashMap<>();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        Map<String, Schema> schemas = new TreeMap<>();
+
+        for (SpecificationCache.Specification specification : specifications) {
+            Map<String, Schema> components = specification.openAPI().getComponents().getSchemas();
+            SchemaGraph graph = SchemaGraph.of(components);
+            for (String name : graph.names()) {
+                hashes.computeIfAbsent(name, n -> new HashSet<>()).add(graph.hashOf(name));
+                declarations.merge(name, 1, Integer::sum);
+                dependencies.computeIfAbsent(name, n -> new HashSet<>()).addAll(graph.dependenciesOf(name));
+                schemas.putIfAbsent(name, components.get(name));
+            }
+        }
+
+        schemas.keySet().removeIf(name -> declarations.get(name) < 2 || hashes.get(name).size() > 1);
+
+        // a shared schema may only reference shared schemas
+        boolean removed = true;
+        while (removed) {
+            removed = schemas.keySet().removeIf(name -> !schemas.keySet().containsAll(dependencies.get(name)));
+        }
+
+        return schemas;
+    }
+
+    /**
+     * The incremental configuration of the generators, which changes with the schemas that are shared.
+     */
+    private String configuration(final Set<String> shared) {
+        String value = configuration + sharedPackage + shared;
+        return GenerationFingerprint.hex(GenerationFingerprint.newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static <T> List<T> invokeAll(final ExecutorService executor, final List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+}
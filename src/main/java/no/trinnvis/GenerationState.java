@@ -0,0 +1,110 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * What the previous run generated for each component schema: the schema's content hash, the schemas it
+ * depends on and the enums emitted with it. Written to the output directory after each run.
+ */
+final class GenerationState {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String configuration;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    GenerationState(final String configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Reads the state, or returns null if there is none.
+     */
+    static GenerationState read(final File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        JsonNode root = MAPPER.readTree(file);
+        GenerationState state = new GenerationState(root.path("configuration").asText());
+
+        Iterator<Map.Entry<String, JsonNode>> schemas = root.path("schemas").fields();
+        while (schemas.hasNext()) {
+            Map.Entry<String, JsonNode> schema = schemas.next();
+            state.put(schema.getKey(),
+                schema.getValue().path("hash").asText(),
+                strings(schema.getValue().path("dependencies")),
+                strings(schema.getValue().path("enums")));
+        }
+
+        return state;
+    }
+
+    private static Set<String> strings(final JsonNode array) {
+        Set<String> strings = new TreeSet<>();
+        array.forEach(node -> strings.add(node.asText()));
+        return strings;
+    }
+
+    void write(final File file) throws IOException {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("configuration", configuration);
+
+        ObjectNode schemas = root.putObject("schemas");
+        entries.forEach((name, entry) -> {
+            ObjectNode schema = schemas.putObject(name);
+            schema.put("hash", entry.hash);
+            ArrayNode dependencies = schema.putArray("dependencies");
+            entry.dependencies.forEach(dependencies::add);
+            ArrayNode enums = schema.putArray("enums");
+            entry.enums.forEach(enums::add);
+        });
+
+        SourceWriter.writeAtomically(file.toPath(), MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(root));
+    }
+
+    void put(final String name, final String hash, final Set<String> dependencies, final Set<String> enums) {
+        entries.put(name, new Entry(hash, new TreeSet<>(dependencies), new TreeSet<>(enums)));
+    }
+
+    String configuration() {
+        return configuration;
+    }
+
+    Set<String> names() {
+        return entries.keySet();
+    }
+
+    String hashOf(final String name) {
+        Entry entry = entries.get(name);
+        return entry != null ? entry.hash : null;
+    }
+
+    Set<String> enumsOf(final String name) {
+        Entry entry = entries.get(name);
+        return entry != null ? entry.enums : Collections.emptySet();
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final Set<String> dependencies;
+        private final Set<String> enums;
+
+        private Entry(final String hash, final Set<String> dependencies, final Set<String> enums) {
+            this.hash = hash;
+            this.dependencies = dependencies;
+            this.enums = enums;
+        }
+    }
+}
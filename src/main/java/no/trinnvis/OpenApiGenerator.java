@@ -2,11 +2,15 @@ package no.trinnvis;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import com.google.common.base.CaseFormat;
-import com.google.common.base.Strings;
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
@@ -15,52 +19,173 @@ import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
 import io.swagger.oas.models.OpenAPI;
-import io.swagger.oas.models.Operation;
-import io.swagger.oas.models.PathItem;
 import io.swagger.oas.models.media.ArraySchema;
-import io.swagger.oas.models.media.Content;
 import io.swagger.oas.models.media.DateSchema;
 import io.swagger.oas.models.media.DateTimeSchema;
-import io.swagger.oas.models.media.MediaType;
 import io.swagger.oas.models.media.ObjectSchema;
 import io.swagger.oas.models.media.Schema;
 import io.swagger.oas.models.media.StringSchema;
 import io.swagger.oas.models.media.UUIDSchema;
-import io.swagger.oas.models.responses.ApiResponse;
-import io.swagger.parser.OpenAPIParser;
-import io.swagger.parser.models.SwaggerParseResult;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.annotation.Generated;
 import javax.lang.model.element.Modifier;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 
 public class OpenApiGenerator {
 
-    private final File output;
+    static final String STATE_FILE = ".openapi-generator.state";
+
+    private static final Set<TypeName> NUMBER_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        ClassName.get(Integer.class), ClassName.get(Long.class), ClassName.get(Double.class), ClassName.get(Float.class))));
+
+    /**
+     * The types of the numeric formats, only used for primitive numbers. Otherwise every integer is an Integer
+     * and other numbers are left as Object.
+     */
+    private static final Map<String, ClassName> NUMBER_FORMATS;
+
+    static {
+        Map<String, ClassName> formats = new HashMap<>();
+        formats.put("int32", ClassName.get(Integer.class));
+        formats.put("int64", ClassName.get(Long.class));
+        formats.put("float", ClassName.get(Float.class));
+        formats.put("double", ClassName.get(Double.class));
+        NUMBER_FORMATS = Collections.unmodifiableMap(formats);
+    }
+
+    static final String COLLECTIONS_CLASS = "ModelCollections";
+
+    /**
+     * The field types besides primitives, enums and models whose values cannot change.
+     */
+    private static final Set<TypeName> VALUE_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        ClassName.get(String.class), ClassName.get(UUID.class), ClassName.get(LocalDate.class),
+        ClassName.get(LocalDateTime.class), ClassName.get(ZonedDateTime.class))));
+
+    /**
+     * The ISO formats of the temporal types, used to write back values that were set rather than read.
+     */
+    private static final Map<TypeName, String> TEMPORAL_FORMATS;
+
+    static {
+        Map<TypeName, String> formats = new HashMap<>();
+        formats.put(ClassName.get(LocalDate.class), "ISO_LOCAL_DATE");
+        formats.put(ClassName.get(LocalDateTime.class), "ISO_LOCAL_DATE_TIME");
+        formats.put(ClassName.get(ZonedDateTime.class), "ISO_OFFSET_DATE_TIME");
+        TEMPORAL_FORMATS = Collections.unmodifiableMap(formats);
+    }
+
+    /**
+     * The package of the generated models unless another one is given.
+     */
+    static final String DEFAULT_PACKAGE = "no.trinnvis.dabih.api";
+
+    /**
+     * The largest maxItems used as the initial capacity of a builder collection.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 256;
+
     private final File input;
-    private final String destinationPackage = "no.trinnvis.dabih.api";
-    private Map<String, ClassName> types = new HashMap<>();
-    private Map<String, StringSchema> enums = new HashMap<>();
+    private final String destinationPackage;
+    private final Map<String, ClassName> types = new HashMap<>();
+    private final Map<String, StringSchema> enums = new ConcurrentHashMap<>();
+    private final Map<Schema, String> enumNames = new IdentityHashMap<>();
+    private final Set<String> externalTypes = new HashSet<>();
     private OpenAPI openAPI;
+    private SchemaIndex schemaIndex;
+    private final GenerationMetrics metrics;
+    private final SourceWriter writer;
+    private final boolean ownWriter;
+    private final File stateFile;
+    private final int threads;
+    private final Map<String, Set<String>> modelEnums = new HashMap<>();
+    private Set<String> immutableModels = Collections.emptySet();
+    private final List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+    private ExecutorService executor;
+    private String configuration;
+    private CodecWriter codecWriter;
+    private boolean primitiveNumbers;
+    private CollectionStrategy collections = CollectionStrategy.DEFAULT;
+    private boolean lazyTemporals;
+    private ResourceWriter resourceWriter;
+    private RouterWriter routerWriter;
+    private boolean clients;
+    private Log log = new SystemStreamLog();
+    private boolean pruneOrphans = true;
+    private File snapshots;
+    private SchemaGraph graph;
+    private GenerationState previousState;
 
     OpenApiGenerator(final File output, final File input) {
-        this.output = output;
+        this(output, input, 1);
+    }
+
+    OpenApiGenerator(final File output, final File input, final int threads) {
+        this(output, input, threads, DEFAULT_PACKAGE);
+    }
+
+    /**
+     * All state lives in the generator, so generators for different outputs may run concurrently.
+     *
+     * @param threads the number of threads used to emit models and enums, 1 emits them on the calling thread
+     * @param destinationPackage the package of the models, the other generated sources go in packages below it
+     */
+    OpenApiGenerator(final File output, final File input, final int threads, final String destinationPackage) {
+        this(output, input, threads, destinationPackage, new SourceWriter(Paths.get(output.getAbsolutePath(), "src/main/java")), true);
+    }
+
+    /**
+     * A generator taking part in a session of several specifications that write to the same output. The state is
+     * kept per package and orphans are left for the session to delete once every generator is done.
+     */
+    OpenApiGenerator(final File output, final File input, final String destinationPackage, final SourceWriter writer) {
+        this(output, input, 1, destinationPackage, writer, false);
+    }
+
+    private OpenApiGenerator(final File output, final File input, final int threads, final String destinationPackage,
+                             final SourceWriter writer, final boolean ownWriter) {
         this.input = input;
+        this.destinationPackage = destinationPackage;
+        this.threads = threads;
+        this.writer = writer;
+        this.metrics = writer.metrics();
+        this.ownWriter = ownWriter;
+        this.stateFile = new File(output, ownWriter ? STATE_FILE : ".openapi-generator." + destinationPackage + ".state");
+        this.resourceWriter = new ResourceWriter(destinationPackage + ".resources", ResourceStyle.ASYNC_RESPONSE, Collections.emptyList(), false);
+        this.routerWriter = new RouterWriter(destinationPackage + ".resources");
         types.put("uuid", ClassName.get(UUID.class));
         types.put("string", ClassName.get(String.class));
         types.put("date", ClassName.get(LocalDate.class));
@@ -70,213 +195,274 @@ public class OpenApiGenerator {
         types.put("boolean", ClassName.get(Boolean.class));
     }
 
-    private static <T, E> Optional<T> getKeyByValue(Map<T, E> map, E value) {
-        return map.entrySet()
-            .stream()
-            .filter(entry -> Objects.equals(entry.getValue(), value))
-            .map(Map.Entry::getKey)
-            .findFirst();
+    /**
+     * Regenerates only the models affected by changes to the specification since the previous run.
+     *
+     * @param configuration identifies the generator configuration, a different value regenerates everything
+     */
+    void incremental(final String configuration) {
+        this.configuration = configuration;
     }
 
-    void execute() {
-
-        SwaggerParseResult result = new OpenAPIParser().readLocation(input.toURI().toString(), null, null);
+    /**
+     * Also generates a streaming serializer and deserializer per model, and a Jackson module registering them.
+     */
+    void codecs(final boolean codecs) {
+        this.codecWriter = codecs ? new CodecWriter(destinationPackage + ".json", this::isEnum) : null;
+    }
 
-        openAPI = result.getOpenAPI();
-        result.getMessages().forEach(System.out::println);
+    /**
+     * Generates required numeric properties as primitives and numeric arrays as primitive arrays, with the type
+     * given by the format. A model cannot be built without its primitive properties, the builder throws a
+     * NullPointerException naming the first one missing.
+     */
+    void primitiveNumbers(final boolean primitiveNumbers) {
+        this.primitiveNumbers = primitiveNumbers;
+    }
 
-        handleTypes(openAPI.getComponents().getSchemas());
+    /**
+     * Keeps date and time properties as the string that was read and parses them on first access.
+     */
+    void lazyTemporals(final boolean lazyTemporals) {
+        this.lazyTemporals = lazyTemporals;
+    }
 
-        writeEnums();
+    /**
+     * @param style how resource methods hand back their result
+     * @param synchronousTags tags whose operations are generated synchronous whatever the style
+     * @param streamArrays stream every array response rather than only operations marked x-streaming
+     */
+    void resources(final ResourceStyle style, final Collection<String> synchronousTags, final boolean streamArrays) {
+        this.resourceWriter = new ResourceWriter(destinationPackage + ".resources", style, synchronousTags, streamArrays);
+    }
 
-       // writeResources();
+    /**
+     * Where progress and warnings are reported, the standard streams unless given.
+     */
+    void log(final Log log) {
+        this.log = log;
+    }
 
+    /**
+     * Deletes the generated sources that the run did not write, true unless given.
+     */
+    void pruneOrphans(final boolean pruneOrphans) {
+        this.pruneOrphans = pruneOrphans;
     }
 
-    private void writeResources() {
+    /**
+     * Also generates an http client per resource.
+     */
+    void clients(final boolean clients) {
+        this.clients = clients;
+    }
 
+    /**
+     * Keeps a snapshot of each parsed specification in the folder, read instead of parsing it again.
+     */
+    void snapshots(final File snapshots) {
+        this.snapshots = snapshots;
+    }
 
-        Tree<String> forest = new Tree<>("forest");
-        Tree<String> current = forest;
+    void collections(final CollectionStrategy collections) {
+        this.collections = collections;
+    }
 
-        for (String tree : openAPI.getPaths().keySet()) {
-            Tree<String> root = current;
+    /**
+     * Component schemas generated elsewhere, e.g. shared by several specifications. They are referenced as the
+     * given classes but not generated.
+     */
+    void external(final Map<String, ClassName> externalTypes) {
+        this.types.putAll(externalTypes);
+        this.externalTypes.addAll(externalTypes.keySet());
+    }
 
-            for (String data : tree.split("/")) {
-                current = current.child(data);
+    /**
+     * Generates every source, going on past sources that fail to be written so that all failures are reported.
+     *
+     * @throws IOException if the specification could not be parsed or any source could not be written, the
+     *                     state is then left as it was so that the next run generates them again
+     */
+    void execute() throws IOException {
+        // one pool serves every phase of the run and is always shut down with it
+        executor = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            generate();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
             }
-
-            current = root;
         }
+    }
 
-        forest.accept(new PrintIndentedVisitor(0));
-
-
-
-
-        Set<String> prefixes = new HashSet<>();
+    private void generate() throws IOException {
 
-        openAPI.getPaths().entrySet()
-            .stream()
-            .sorted(Comparator.comparing(e -> e.getKey()))
-            .forEach((e) -> {
+        if (openAPI == null) {
+            long start = System.nanoTime();
+            try {
+                parse();
+            } finally {
+                metrics.elapsed(GenerationMetrics.Phase.PARSE, System.nanoTime() - start);
+            }
+        }
 
-                String[] r = e.getKey().split("/");
-                prefixes.add(r[1]);
+        Map<String, Schema> schemas = localSchemas();
 
-                //    System.out.println(e.getKey() + " " );
-            });
+        metrics.time(GenerationMetrics.Phase.RESOLVE, () -> {
+            metrics.schemas(schemas.size());
 
-        prefixes.forEach(e -> {
-            System.out.println(e);
-            try {
-                writeResourceApi(e);
-            } catch (IOException e1) {
-                e1.printStackTrace();
+            if (configuration != null) {
+                graph = SchemaGraph.of(schemas);
+                try {
+                    previousState = GenerationState.read(stateFile);
+                } catch (IOException e) {
+                    // an unreadable state only costs a full run, which writes a new one
+                    previousState = null;
+                }
             }
         });
 
-        //openAPI.getTags().forEach(tag -> {
-        //    System.out.println(tag);
-        //});
-    }
+        handleTypes(schemas);
 
-    private void writeResourceApi(final String e) throws IOException {
+        // resources run first, inline enums of parameters and responses are written with the others
+        metrics.time(GenerationMetrics.Phase.RESOURCES, this::writeResources);
 
-        TypeSpec.Builder builder = TypeSpec.classBuilder(CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_CAMEL, e) + "Api")
-            .addJavadoc("The $L class.", CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, e).replaceAll("_", " "))
-            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-            .addAnnotation(AnnotationSpec.builder(javax.ws.rs.Path.class).addMember("value", "\"/$L\"", e).build());
+        metrics.time(GenerationMetrics.Phase.ENUMS, this::writeEnums);
 
+        if (codecWriter != null) {
+            metrics.time(GenerationMetrics.Phase.MODELS, this::writeCodecModule);
+        }
 
+        if (collections == CollectionStrategy.COMPACT) {
+            metrics.time(GenerationMetrics.Phase.MODELS, this::writeCollectionsSupport);
+        }
 
-        writeResourceApiOperations(builder, e);
+        if (!failures.isEmpty()) {
+            IOException failure = new IOException(failures.size() + " sources could not be generated from " + input, failures.get(0));
+            failures.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
 
-        JavaFile javaFile = JavaFile.builder(destinationPackage + ".resources", builder.build())
-            .skipJavaLangImports(true)
-            .build();
+        writeState();
 
-        javaFile.writeTo(Paths.get(output.getAbsolutePath(), "src/main/java"));
+        if (!ownWriter || !pruneOrphans) {
+            return;
+        }
 
+        writer.deleteOrphans().forEach(orphan -> log.info("Deleted " + orphan));
     }
 
-    private void writeResourceApiOperations(final TypeSpec.Builder builder, final String e) {
-        writeDirectOperations(builder, e, CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_CAMEL, ""), "");
-        writeIndirectOperations(builder, e);
-        writeIndirectOperationsWithPathParameter(builder, e);
+    private void failed(final IOException e) {
+        failures.add(e);
     }
 
-    private void writeIndirectOperations(final TypeSpec.Builder builder, final String e) {
-        openAPI.getPaths().entrySet()
-            .stream()
-            .filter(item -> {
-                String[] x = item.getKey().split(("/"));
-
-                return x.length == 3 && x[1].equals(e) && !x[2].contains("{");
-            }).forEach(item -> {
-            String[] x = item.getKey().split(("/"));
-
-            writeDirectOperations(builder, item.getKey().substring(1), CaseFormat.LOWER_HYPHEN.to(CaseFormat.UPPER_CAMEL, x[2]), x[2]);
-        });
+    /**
+     * The component schemas generated by this generator, all but the external ones.
+     */
+    private Map<String, Schema> localSchemas() {
+        Map<String, Schema> schemas = new LinkedHashMap<>(openAPI.getComponents().getSchemas());
+        schemas.keySet().removeAll(externalTypes);
+        return schemas;
     }
 
+    GenerationMetrics metrics() {
+        return metrics;
+    }
 
-    private void writeIndirectOperationsWithPathParameter(final TypeSpec.Builder builder, final String e) {
-        openAPI.getPaths().entrySet()
-            .stream()
-            .filter(item -> {
-                String[] x = item.getKey().split(("/"));
+    void parse() throws IOException {
+        SpecificationCache.Specification specification = SpecificationCache.parse(input, snapshots);
+        if (specification.openAPI() == null) {
+            specification.messages().forEach(log::error);
+            throw new IOException("Unable to parse " + input);
+        }
+        specification(specification);
+    }
 
-                return x.length == 3 && x[1].equals(e) && x[2].contains("{");
-            }).forEach(item -> {
-            String[] x = item.getKey().split(("/"));
+    /**
+     * Generates from a specification that has already been parsed rather than parsing the input.
+     */
+    void specification(final SpecificationCache.Specification specification) {
+        specification.messages().forEach(log::warn);
 
+        this.openAPI = specification.openAPI();
+        this.schemaIndex = specification.schemaIndex();
+    }
 
-            String name = x[2].substring(1, x[2].length()-1);
+    void index(final OpenAPI openAPI) {
+        this.openAPI = openAPI;
+        this.schemaIndex = new SchemaIndex(openAPI.getComponents().getSchemas());
+    }
 
-            name = name.replace("+","");
+    OpenAPI openAPI() {
+        return openAPI;
+    }
 
-            final String method = "get" + CaseFormat.LOWER_HYPHEN.to(CaseFormat.UPPER_CAMEL, name);
-            MethodSpec.Builder builder1 = MethodSpec.methodBuilder(method)
-                .addModifiers(Modifier.PUBLIC);
+    private void writeResources() {
+        Map<String, List<ApiOperation>> groups = new TreeMap<>();
+        List<ApiOperation> operations = ApiOperation.of(openAPI, this::findClass);
+        if (operations.isEmpty()) {
+            // models only, e.g. the schemas shared by several specifications
+            return;
+        }
+        operations.forEach(operation -> groups.computeIfAbsent(operation.group(), g -> new ArrayList<>()).add(operation));
+        operations.stream().filter(operation -> !ResourceWriter.supports(operation)).forEach(operation ->
+            log.warn("Skipping " + operation.method() + " " + operation.path() + ", JAX-RS 2.0 has no annotation for it"));
 
-            final String path = "/" + x[2];
-            if (!Strings.isNullOrEmpty(path)) {
-                builder1.addAnnotation(AnnotationSpec.builder(javax.ws.rs.Path.class).addMember("value", "\"$L\"", path).build());
+        if (operations.stream().anyMatch(resourceWriter::streams)) {
+            try {
+                writer.write(resourceWriter.arrayOutput());
+            } catch (IOException e) {
+                failed(e);
             }
+        }
 
-
-            MethodSpec spec = builder1
-                .returns(String.class)
-                .addStatement("return \"subresource\"")
-                .build();
-
-            builder.addMethod(spec);
+        groups.forEach((group, grouped) -> {
+            try {
+                writer.write(resourceWriter.resource(group, grouped));
+                metrics.resource();
+            } catch (IOException e) {
+                failed(e);
+            }
         });
-    }
 
+        try {
+            writer.write(routerWriter.router(operations));
+        } catch (IOException e) {
+            failed(e);
+        }
 
-    private void writeDirectOperations(final TypeSpec.Builder builder, final String e, final String Suffix, final String path) {
-        final PathItem x = openAPI.getPaths().get("/" + e);
-        if (x != null) {
-            writeOperation(builder, x.getGet(), "get" + Suffix, javax.ws.rs.GET.class, path);
-            writeOperation(builder, x.getPost(), "post" + Suffix, javax.ws.rs.POST.class, path);
-            writeOperation(builder, x.getPut(), "put" + Suffix, javax.ws.rs.PUT.class, path);
-            writeOperation(builder, x.getDelete(), "delete" + Suffix, javax.ws.rs.DELETE.class, path);
+        if (clients) {
+            writeClients(groups);
         }
     }
 
-    private void writeOperation(final TypeSpec.Builder builder, final Operation operation, final String method, Class<?> methodClass, final String path) {
-
-        if (operation != null) {
-
-            MethodSpec.Builder builder1 = MethodSpec.methodBuilder(method)
-                .addModifiers(Modifier.PUBLIC)
-                .addAnnotation(methodClass);
-
-
-            if (!Strings.isNullOrEmpty(path)) {
-                builder1.addAnnotation(AnnotationSpec.builder(javax.ws.rs.Path.class).addMember("value", "\"/$L\"", path).build());
-            }
-
-
-            if (operation.getResponses().get("200") != null) {
-                final ApiResponse r = operation.getResponses().get("200");
-                final Content c = r.getContent();
-                if (c != null) {
-                    MediaType m = c.get("application/json");
-
-                    TypeName typeName = findClass("", m.getSchema());
-
-                    builder1
-                        .returns(typeName)
-                        .addStatement("return null");
-                }
-            } else {
-//                builder1
+    private void writeClients(final Map<String, List<ApiOperation>> groups) {
+        ClientWriter clientWriter = new ClientWriter(destinationPackage + ".client",
+            codecWriter != null ? ClassName.get(destinationPackage + ".json", CodecWriter.MODULE_NAME) : null);
 
-  //                  .addStatement("");
-
-            }
-
-            MethodSpec spec = builder1.build();
-
-            builder.addMethod(spec);
+        groups.values().stream().flatMap(List::stream).filter(operation -> !ClientWriter.supports(operation)).forEach(operation ->
+            log.warn("Skipping the client of " + operation.method() + " " + operation.path() + ", HttpURLConnection does not support it"));
 
+        try {
+            writer.write(clientWriter.apiClient());
+        } catch (IOException e) {
+            failed(e);
         }
 
-    }
-
-    private void writeEnums() {
-        enums.forEach((k, v) -> {
+        groups.forEach((group, grouped) -> {
             try {
-                writeEnum(k, v);
+                writer.write(clientWriter.client(group, grouped));
             } catch (IOException e) {
-                e.printStackTrace();
+                failed(e);
             }
         });
     }
 
+    private void writeEnums() {
+        emitAll(new TreeMap<>(enums), this::writeEnum);
+    }
+
     private void writeEnum(final String name, final StringSchema declaration) throws IOException {
 
         TypeSpec.Builder builder = TypeSpec.enumBuilder(name)
@@ -290,12 +476,17 @@ public class OpenApiGenerator {
 
         declaration.getEnum().forEach(builder::addEnumConstant);
 
+        ClassName enumName = ClassName.get(destinationPackage, name);
+
         CodeBlock block = CodeBlock.builder()
             .beginControlFlow("if (string == null || string.isEmpty())")
             .addStatement("return null")
-            .nextControlFlow("else")
-            .addStatement("return " + name + ".valueOf(string)")
             .endControlFlow()
+            .addStatement("$T value = ofNullable(string)", enumName)
+            .beginControlFlow("if (value == null)")
+            .addStatement("throw new $T($S + string)", IllegalArgumentException.class, "No enum constant " + name + ".")
+            .endControlFlow()
+            .addStatement("return value")
             .build();
 
         MethodSpec ofMethod = MethodSpec.methodBuilder("of")
@@ -303,10 +494,37 @@ public class OpenApiGenerator {
             .addParameter(String.class, "string")
             //.addJavadoc("Creates a new $L.\n\n", t.name() + "Builder")
             //.addJavadoc("@returns the new $L", t.name() + "Builder")
-            .returns(ClassName.get(destinationPackage, name))
+            .returns(enumName)
             .addCode(block)
             .build();
 
+        CodeBlock.Builder lookup = CodeBlock.builder()
+            .beginControlFlow("if (string == null)")
+            .addStatement("return null")
+            .endControlFlow()
+            .beginControlFlow("switch (string)");
+        declaration.getEnum().forEach(constant -> lookup.add("case $S:\n", constant).indent().addStatement("return $L", constant).unindent());
+        lookup.add("default:\n").indent().addStatement("return null").unindent().endControlFlow();
+
+        MethodSpec ofNullableMethod = MethodSpec.methodBuilder("ofNullable")
+            .addJavadoc("The constant named {@code string}, or {@code null} if there is none.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addAnnotation(JsonCreator.class)
+            .addParameter(String.class, "string")
+            .returns(enumName)
+            .addCode(lookup.build())
+            .build();
+
+        MethodSpec ofOrDefaultMethod = MethodSpec.methodBuilder("ofOrDefault")
+            .addJavadoc("The constant named {@code string}, or {@code defaultValue} if there is none.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(String.class, "string")
+            .addParameter(enumName, "defaultValue")
+            .returns(enumName)
+            .addStatement("$T value = ofNullable(string)", enumName)
+            .addStatement("return value != null ? value : defaultValue")
+            .build();
+
         MethodSpec toStringMethod = MethodSpec.methodBuilder("toString")
             .addModifiers(Modifier.PUBLIC)
             .addAnnotation(Override.class)
@@ -316,32 +534,194 @@ public class OpenApiGenerator {
 
         TypeSpec spec = builder
             .addMethod(ofMethod)
+            .addMethod(ofNullableMethod)
+            .addMethod(ofOrDefaultMethod)
             .addMethod(toStringMethod)
-            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", "Generated from OpenApi").build())
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
             .build();
 
         JavaFile javaFile = JavaFile.builder(destinationPackage, spec)
             .skipJavaLangImports(true)
             .build();
 
-        javaFile.writeTo(Paths.get(output.getAbsolutePath(), "src/main/java"));
+        writer.write(javaFile);
+        metrics.enumeration();
 
     }
 
     private void handleTypes(final Map<String, Schema> types) {
-        types.forEach((key, value) -> {
-            addToTypeMap(key, destinationPackage);
+        Map<String, Schema> emitted = new LinkedHashMap<>(types);
+
+        metrics.time(GenerationMetrics.Phase.RESOLVE, () -> {
+            buildTypeMap(types);
+            nameEnums(types);
+            immutableModels = immutableModels(types);
+            emitted.keySet().retainAll(affectedTypes(types.keySet()));
         });
 
-        types.forEach((key, value) -> {
+        metrics.time(GenerationMetrics.Phase.MODELS, () -> emitAll(emitted, (key, value) -> {
+            log.debug("Generating " + key);
+            writeModelType(key, value, destinationPackage);
+            metrics.model();
+        }));
+    }
 
-            System.out.println("" + key);
-            try {
-                writeModelType(key, value, destinationPackage);
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Names the inline enums of every model, in the order of the model names, before models are emitted
+     * concurrently. Colliding enum names are then resolved the same way in every run. The enums each model
+     * uses are kept for the state, as a model may use another enum although its own schema is unchanged.
+     */
+    private void nameEnums(final Map<String, Schema> types) {
+        new TreeMap<>(types).forEach((name, schema) -> {
+            Set<String> used = new TreeSet<>();
+            propertyTypes(schema).values().forEach(type -> collectEnums(type, used));
+            modelEnums.put(name, used);
+        });
+    }
+
+    /**
+     * The models that cannot change once built, these cache their hash. Each field of such a model holds a value,
+     * an enum, an immutable model or, with compact collections, a list or set of those.
+     */
+    private Set<String> immutableModels(final Map<String, Schema> schemas) {
+        Map<String, Collection<TypeName>> fields = new HashMap<>();
+        Map<TypeName, String> models = new HashMap<>();
+        schemas.forEach((name, schema) -> {
+            models.put(types.get(name), name);
+            // the map of additional properties is shared with the builder
+            if (schema.getAdditionalProperties() == null) {
+                fields.put(name, propertyTypes(schema).values());
             }
         });
+
+        // models referring to each other stay immutable unless one of them holds a mutable field
+        Set<String> immutable = new HashSet<>(fields.keySet());
+        boolean removed = true;
+        while (removed) {
+            removed = immutable.removeIf(name -> !fields.get(name).stream().allMatch(type -> isImmutable(type, models, immutable)));
+        }
+        return immutable;
+    }
+
+    private boolean isImmutable(final TypeName type, final Map<TypeName, String> models, final Set<String> immutable) {
+        if (type.isPrimitive() || type.isBoxedPrimitive() || VALUE_TYPES.contains(type) || isEnum(type)) {
+            return true;
+        } else if (models.containsKey(type)) {
+            return immutable.contains(models.get(type));
+        } else if (enumSetItem(type).isPresent()) {
+            // the builder copies into a set of its own, the model only exposes an unmodifiable view of it
+            return true;
+        } else if (collections == CollectionStrategy.COMPACT && type instanceof ParameterizedTypeName) {
+            ParameterizedTypeName collection = (ParameterizedTypeName) type;
+            return (collection.rawType.equals(ClassName.get(List.class)) || collection.rawType.equals(ClassName.get(Set.class)))
+                && isImmutable(collection.typeArguments.get(0), models, immutable);
+        }
+        return false;
+    }
+
+    /**
+     * The types to emit, all of them unless the previous state allows an incremental run. The sources of the
+     * other types and their enums are retained as they are.
+     */
+    private Set<String> affectedTypes(final Set<String> names) {
+        if (previousState == null || !previousState.configuration().equals(configuration)) {
+            return names;
+        }
+
+        Set<String> stale = new HashSet<>();
+        for (String name : names) {
+            if (!writer.exists(this.types.get(name))) {
+                stale.add(name);
+            }
+            for (String enumName : previousState.enumsOf(name)) {
+                if (!writer.exists(ClassName.get(destinationPackage, enumName))) {
+                    stale.add(name);
+                }
+            }
+            if (!modelEnums.get(name).equals(previousState.enumsOf(name))) {
+                // an enum it shared was renamed, e.g. after a collision with a changed enum of another model
+                stale.add(name);
+            }
+        }
+
+        Set<String> affected = graph.affected(previousState, stale);
+
+        for (String name : names) {
+            if (!affected.contains(name)) {
+                writer.retain(this.types.get(name));
+                if (codecWriter != null) {
+                    writer.retain(codecWriter.serializerOf(this.types.get(name)));
+                    writer.retain(codecWriter.deserializerOf(this.types.get(name)));
+                }
+                modelEnums.get(name).forEach(enumName -> writer.retain(ClassName.get(destinationPackage, enumName)));
+            }
+        }
+
+        log.info("Regenerating " + affected.size() + " of " + names.size() + " types");
+        return affected;
+    }
+
+    private void writeState() throws IOException {
+        if (configuration == null) {
+            return;
+        }
+
+        GenerationState state = new GenerationState(configuration);
+        for (String name : graph.names()) {
+            state.put(name, graph.hashOf(name), graph.dependenciesOf(name), modelEnums.get(name));
+        }
+
+        state.write(stateFile);
+    }
+
+    /**
+     * Emits every entry, in parallel on the pool of the run when more than one thread is configured.
+     * The type map must be complete before this is called; emitters may only register enums.
+     */
+    private <T> void emitAll(final Map<String, T> items, final Emitter<T> emitter) {
+        if (executor == null) {
+            items.forEach((key, value) -> emit(emitter, key, value));
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        items.forEach((key, value) -> tasks.add(() -> {
+            emit(emitter, key, value);
+            return null;
+        }));
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> void emit(final Emitter<T> emitter, final String key, final T value) {
+        try {
+            emitter.emit(key, value);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private interface Emitter<T> {
+        void emit(String key, T value) throws IOException;
+    }
+
+    void buildTypeMap(final Map<String, Schema> types) {
+        types.forEach((key, value) -> {
+            addToTypeMap(key, destinationPackage);
+        });
+    }
+
+    String destinationPackage() {
+        return destinationPackage;
     }
 
     private void addToTypeMap(String key, String s) {
@@ -352,6 +732,89 @@ public class OpenApiGenerator {
     }
 
     private void writeModelType(String name, final Schema value, String packageName) throws IOException {
+        writer.write(modelType(name, value, packageName));
+
+        if (codecWriter != null) {
+            for (JavaFile codec : codecWriter.codecs(ClassName.get(packageName, name), propertyTypes(value), value.getAdditionalProperties() != null, this::isLazyTemporal)) {
+                writer.write(codec);
+            }
+        }
+    }
+
+    private Map<String, TypeName> propertyTypes(final Schema value) {
+        Map<String, TypeName> propertyTypes = new LinkedHashMap<>();
+        if (value.getType().equals("object")) {
+            ((ObjectSchema) value).getProperties().forEach((k, p) -> propertyTypes.put(k, propertyType(value, k, p)));
+        }
+        return propertyTypes;
+    }
+
+    /**
+     * Writes the helpers that compact builder collections into right-sized unmodifiable ones.
+     */
+    private void writeCollectionsSupport() {
+        TypeVariableName t = TypeVariableName.get("T");
+
+        MethodSpec compactList = MethodSpec.methodBuilder("compactList")
+            .addJavadoc("An unmodifiable copy of {@code list} backed by an array of its size, a shared empty list if it is null or empty.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+            .addTypeVariable(t)
+            .returns(ParameterizedTypeName.get(ClassName.get(List.class), t))
+            .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), t), "list", Modifier.FINAL)
+            .beginControlFlow("if (list == null || list.isEmpty())")
+            .addStatement("return $T.emptyList()", Collections.class)
+            .endControlFlow()
+            .beginControlFlow("if (list.size() == 1)")
+            .addStatement("return $T.singletonList(list.get(0))", Collections.class)
+            .endControlFlow()
+            .addStatement("return $T.unmodifiableList($T.asList(($T[]) list.toArray()))", Collections.class, Arrays.class, t)
+            .build();
+
+        MethodSpec compactSet = MethodSpec.methodBuilder("compactSet")
+            .addJavadoc("An unmodifiable copy of {@code set} sized for its elements, a shared empty set if it is null or empty.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addTypeVariable(t)
+            .returns(ParameterizedTypeName.get(ClassName.get(Set.class), t))
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Set.class), t), "set", Modifier.FINAL)
+            .beginControlFlow("if (set == null || set.isEmpty())")
+            .addStatement("return $T.emptySet()", Collections.class)
+            .endControlFlow()
+            .beginControlFlow("if (set.size() == 1)")
+            .addStatement("return $T.singleton(set.iterator().next())", Collections.class)
+            .endControlFlow()
+            .addStatement("return $T.unmodifiableSet(new $T<>(set))", Collections.class, HashSet.class)
+            .build();
+
+        TypeSpec spec = TypeSpec.classBuilder(COLLECTIONS_CLASS)
+            .addJavadoc("Collection helpers for the generated models.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(compactList)
+            .addMethod(compactSet)
+            .build();
+
+        try {
+            writer.write(JavaFile.builder(destinationPackage, spec).skipJavaLangImports(true).build());
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeCodecModule() {
+        List<ClassName> models = new ArrayList<>();
+        localSchemas().keySet().forEach(name -> models.add(types.get(name)));
+        models.sort(Comparator.comparing(ClassName::simpleName));
+
+        try {
+            writer.write(codecWriter.module(models));
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    JavaFile modelType(String name, final Schema value, String packageName) {
         TypeSpec.Builder builder = TypeSpec.classBuilder(name)
             .addJavadoc("The $L class.", CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, name).replaceAll("_", " "))
             .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
@@ -373,6 +836,8 @@ public class OpenApiGenerator {
         constructorBuilder.addParameter(ClassName.get(packageName, name, name + "Builder"), "builder");
 
         List<String> constructorParameterNames = new ArrayList<>();
+        Map<String, TypeName> fields = new LinkedHashMap<>();
+        Set<String> lazyFields = new HashSet<>();
 
         if (value.getType().equals("object")) {
 
@@ -380,10 +845,17 @@ public class OpenApiGenerator {
 
             object.getProperties().forEach((k, p) -> {
 
-                TypeName type = findClass(k, p);
+                TypeName type = propertyType(object, k, p);
+                fields.put(k, type);
 
                 constructorParameterNames.add(k);
 
+                if (isLazyTemporal(type)) {
+                    lazyFields.add(k);
+                    addLazyTemporal(builder, builderBuilder, constructorBuilder, p, type, builderType, name, k);
+                    return;
+                }
+
                 addField(builder, p, type, k);
                 addBuilderField(builderBuilder, p, type, k);
 
@@ -392,13 +864,19 @@ public class OpenApiGenerator {
 
                 addBuilderMethod(builderBuilder, p, type, builderType, name, k);
 
-                constructorBuilder
-                    .addStatement("$N = builder.$N", k, k);
+                addConstructorStatement(constructorBuilder, type, k, packageName);
             });
 
         }
 
 
+        if (!lazyFields.isEmpty()) {
+            // the raw accessors would otherwise move lazy properties after the others
+            AnnotationSpec.Builder order = AnnotationSpec.builder(JsonPropertyOrder.class);
+            fields.keySet().forEach(k -> order.addMember("value", "$S", k));
+            builder.addAnnotation(order.build());
+        }
+
         MethodSpec buildMethod = MethodSpec.methodBuilder("build")
             .addModifiers(Modifier.PUBLIC)
             .addJavadoc("Creates a new $L with all configuration options that have been specified by calling methods on this builder.\n", name)
@@ -415,15 +893,18 @@ public class OpenApiGenerator {
             addAdditionalPropertiesField(builder);
             final String k = "additionalProperties";
             constructorBuilder
-                .addStatement("$N = builder.$N", k, k);
+                .addStatement("$N = builder.$N == null ? $T.emptyMap() : builder.$N", k, k, Collections.class, k);
 
             addGetAdditionalPropertiesMethod(builder);
 
             addBuilderMethodForAdditionalProperties(builderBuilder, builderType, name);
             addBuilderFieldForAdditionalProperties(builderBuilder);
 
+            fields.put(k, ParameterizedTypeName.get(Map.class, String.class, Object.class));
         }
 
+        addValueMethods(builder, ClassName.get(packageName, name), fields, lazyFields, immutableModels.contains(name));
+
         final AnnotationSpec annotationSpec = AnnotationSpec.builder(JsonPOJOBuilder.class)
             .addMember("withPrefix", "$S", "")
             .build();
@@ -450,31 +931,26 @@ public class OpenApiGenerator {
             .addMethod(constructorBuilder.build())
             .addMethod(builderMethod)
             .addType(builderBuilder.build())
-            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", "Generated from OpenApi").build())
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
             .build();
 
-        JavaFile javaFile = JavaFile.builder(packageName, spec)
+        return JavaFile.builder(packageName, spec)
             .skipJavaLangImports(true)
             .build();
+    }
 
-        javaFile.writeTo(Paths.get(output.getAbsolutePath(), "src/main/java"));
+    TypeName findClass(String type, Schema p) {
+        return findClass(null, type, p);
     }
 
-    private TypeName findClass(String type, Schema p) {
+    /**
+     * @param owner the component schema declaring the property, if any, used to name colliding enums
+     */
+    private TypeName findClass(final String owner, final String type, final Schema p) {
         if (p instanceof StringSchema) {
             StringSchema stringTypeDeclaration = (StringSchema) p;
             if (stringTypeDeclaration.getEnum() != null) {
-                System.out.println(type + " is enum " + stringTypeDeclaration.getEnum());
-
-                String name = capitalize(type) + "Enum";
-
-                if (!enums.containsKey(name)) {
-                    System.out.println(name + " is defined");
-                    enums.put(name, stringTypeDeclaration);
-
-                }
-
-                return ClassName.get(destinationPackage, name);
+                return ClassName.get(destinationPackage, enumName(owner, type, stringTypeDeclaration));
 
             } else if (stringTypeDeclaration.getFormat() != null) {
                 if (types.containsKey(stringTypeDeclaration.getFormat())) {
@@ -498,15 +974,25 @@ public class OpenApiGenerator {
             return types.get(schema.getFormat());
         }
 
-        if (p != dereference(p)) {
-            return findClass(type, dereference(p));
+        Schema dereferenced = dereference(p);
+        if (p != dereferenced) {
+            return findClass(owner, type, dereferenced);
         }
 
-        Optional<String> schemaName = getKeyByValue(openAPI.getComponents().getSchemas(), p);
+        Optional<String> schemaName = schemaIndex.nameOf(p);
         if (schemaName.isPresent() && types.containsKey(schemaName.get())) {
             return types.get(schemaName.get());
         }
 
+        if (primitiveNumbers && isNumeric(p)) {
+            ClassName number = NUMBER_FORMATS.get(p.getFormat());
+            if (number != null) {
+                return number;
+            } else if ("number".equals(p.getType())) {
+                return ClassName.get(Double.class);
+            }
+        }
+
         if (types.containsKey(p.getType())) {
             return types.get(p.getType());
         }
@@ -516,7 +1002,11 @@ public class OpenApiGenerator {
 
             Schema subSchema = dereference(declaration.getItems());
 
-            TypeName itemType = findClass(subSchema.getTitle(), subSchema);
+            TypeName itemType = findClass(owner, subSchema.getTitle() != null ? subSchema.getTitle() : type, subSchema);
+            if (primitiveNumbers && NUMBER_TYPES.contains(itemType)) {
+                return ArrayTypeName.of(itemType.unbox());
+            }
+
             ClassName set = ClassName.get("java.util", "Set");
             if ("list".equals(declaration.getFormat())) {
                 set = ClassName.get("java.util", "List");
@@ -528,15 +1018,85 @@ public class OpenApiGenerator {
 //        throw new IllegalArgumentException(type);
     }
 
-    private Schema dereference(final Schema schema) {
+    /**
+     * The name of an inline enum, the property name followed by Enum. If a different enum already has that name,
+     * the name is qualified by the owner, and failing that numbered. Enums with the same constants share a name.
+     */
+    private synchronized String enumName(final String owner, final String type, final StringSchema declaration) {
+        String name = enumNames.get(declaration);
+        if (name != null) {
+            return name;
+        }
 
-        if (schema.get$ref() != null) {
-            String[] n = schema.get$ref().split("/");
-            return openAPI.getComponents().getSchemas().get(n[n.length - 1]);
-        } else {
-            return schema;
+        String base = capitalize(type) + "Enum";
+        name = base;
+        if (!claim(name, declaration) && owner != null) {
+            name = capitalize(owner) + base;
+        }
+        for (int i = 2; !claim(name, declaration); i++) {
+            name = base + i;
+        }
+
+        log.debug(type + " is enum " + declaration.getEnum() + " named " + name);
+        enumNames.put(declaration, name);
+        return name;
+    }
+
+    private boolean claim(final String name, final StringSchema declaration) {
+        StringSchema claimed = enums.putIfAbsent(name, declaration);
+        return claimed == null || claimed.getEnum().equals(declaration.getEnum());
+    }
+
+    private static boolean isNumeric(final Schema schema) {
+        return "integer".equals(schema.getType()) || "number".equals(schema.getType());
+    }
+
+    /**
+     * The type of an object property, a primitive for required numeric properties if enabled.
+     */
+    private TypeName propertyType(final Schema object, final String name, final Schema property) {
+        TypeName type = findClass(schemaIndex.nameOf(object).orElse(null), name, property);
+
+        if (primitiveNumbers && object.getRequired() != null && object.getRequired().contains(name)
+            && isNumeric(dereference(property)) && NUMBER_TYPES.contains(type)) {
+            return type.unbox();
+        }
+
+        return type;
+    }
+
+    private void collectEnums(final TypeName type, final Set<String> names) {
+        if (type instanceof ParameterizedTypeName) {
+            ((ParameterizedTypeName) type).typeArguments.forEach(argument -> collectEnums(argument, names));
+        } else if (isEnum(type)) {
+            names.add(((ClassName) type).simpleName());
+        }
+    }
+
+    private boolean isEnum(final TypeName type) {
+        return type instanceof ClassName
+            && ((ClassName) type).packageName().equals(destinationPackage)
+            && enums.containsKey(((ClassName) type).simpleName());
+    }
+
+    /**
+     * The item type of a set of generated enums, these are backed by an {@link EnumSet}.
+     */
+    private Optional<ClassName> enumSetItem(final TypeName type) {
+        if (type instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterized = (ParameterizedTypeName) type;
+            TypeName item = parameterized.typeArguments.get(0);
+            if (parameterized.rawType.equals(ClassName.get(Set.class)) && isEnum(item)) {
+                return Optional.of((ClassName) item);
+            }
         }
+        return Optional.empty();
+    }
 
+    private Schema dereference(final Schema schema) {
+        // a reference to an unknown schema is left as it is and generated as an Object
+        Schema resolved = schemaIndex.dereference(schema);
+        return resolved != null ? resolved : schema;
     }
 
     private String capitalize(String input) {
@@ -582,8 +1142,26 @@ public class OpenApiGenerator {
             .addJavadoc("Sets the $L property for the new $L.\n", propertyName, name)
             .addJavadoc("@param $L the $L\n", propertyName, propertyName)
             .addJavadoc("@returns a reference to this $T", builderType)
-            .addParameter(type, propertyName, Modifier.FINAL)
-            .addStatement("this." + propertyName + "=" + propertyName)
+            .addParameter(type, propertyName, Modifier.FINAL);
+
+        Optional<ClassName> enumItem = enumSetItem(type);
+        if (enumItem.isPresent()) {
+            methodBuilder
+                .beginControlFlow("if ($N == null)", propertyName)
+                .addStatement("this.$N = null", propertyName)
+                .nextControlFlow("else")
+                .addStatement("this.$N = $T.noneOf($T.class)", propertyName, EnumSet.class, enumItem.get())
+                .beginControlFlow("for ($T value : $N)", enumItem.get(), propertyName)
+                .beginControlFlow("if (value != null)")
+                .addStatement("this.$N.add(value)", propertyName)
+                .endControlFlow()
+                .endControlFlow()
+                .endControlFlow();
+        } else {
+            methodBuilder
+                .addStatement("this." + propertyName + "=" + propertyName);
+        }
+        methodBuilder
             .addStatement("return this");
 
         if (p.getDescription() != null) {
@@ -627,6 +1205,9 @@ public class OpenApiGenerator {
             .addJavadoc("@returns a reference to this $T", builderType)
             .addParameter(ClassName.get(String.class), "key", Modifier.FINAL)
             .addParameter(ClassName.get(Object.class), "value", Modifier.FINAL)
+            .beginControlFlow("if (this.$N == null)", propertyName)
+            .addStatement("this.$N = new $T<>()", propertyName, HashMap.class)
+            .endControlFlow()
             .addStatement("this." + propertyName + ".put(key, value)")
             .addStatement("return this");
 
@@ -659,19 +1240,264 @@ public class OpenApiGenerator {
         builder.addField(field);
     }
 
+    /**
+     * Adds a field-by-field equals, a hashCode and a toString. The hash is computed once and cached when the model
+     * is immutable, otherwise a change to one of its collections would leave it out of step with equals.
+     */
+    private void addValueMethods(final TypeSpec.Builder builder, final ClassName model, final Map<String, TypeName> fields, final Set<String> lazyFields,
+                                 final boolean cacheHash) {
+        Set<String> names = new HashSet<>(fields.keySet());
+        lazyFields.forEach(field -> names.add(field + CodecWriter.RAW_SUFFIX));
+        String hash = "hash";
+        for (int i = 2; names.contains(hash); i++) {
+            hash = "hash" + i;
+        }
+
+        if (cacheHash) {
+            builder.addField(FieldSpec.builder(int.class, hash, Modifier.PRIVATE).build());
+        }
+
+        MethodSpec.Builder equals = MethodSpec.methodBuilder("equals")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class)
+            .addParameter(Object.class, "o")
+            .beginControlFlow("if (this == o)")
+            .addStatement("return true")
+            .endControlFlow()
+            .beginControlFlow("if (o == null || getClass() != o.getClass())")
+            .addStatement("return false")
+            .endControlFlow();
+
+        if (fields.isEmpty()) {
+            equals.addStatement("return true");
+        } else {
+            CodeBlock.Builder comparison = CodeBlock.builder();
+            String operator = "";
+            for (Map.Entry<String, TypeName> field : fields.entrySet()) {
+                comparison.add("$L$L", operator, fieldEquals(access("this", field.getKey(), lazyFields), access("that", field.getKey(), lazyFields), field.getValue()));
+                operator = "\n&& ";
+            }
+
+            equals.addStatement("$T that = ($T) o", model, model);
+            if (cacheHash) {
+                equals
+                    .beginControlFlow("if (this.$N != 0 && that.$N != 0 && this.$N != that.$N)", hash, hash, hash, hash)
+                    .addStatement("return false")
+                    .endControlFlow();
+            }
+            equals.addStatement("return $L", comparison.build());
+        }
+
+        MethodSpec.Builder hashCode = MethodSpec.methodBuilder("hashCode")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class);
+        if (cacheHash) {
+            hashCode
+                .addStatement("int h = this.$N", hash)
+                .beginControlFlow("if (h == 0)")
+                .addStatement("h = 1");
+        } else {
+            hashCode.addStatement("int h = 1");
+        }
+        fields.forEach((k, type) -> hashCode.addStatement("h = 31 * h + $L", fieldHashCode(access("this", k, lazyFields), type)));
+        if (cacheHash) {
+            hashCode
+                .addStatement("this.$N = h", hash)
+                .endControlFlow();
+        }
+        hashCode.addStatement("return h");
+
+        // sized for the names and about sixteen characters per value
+        int capacity = model.simpleName().length() + 2 + fields.keySet().stream().mapToInt(k -> k.length() + 3 + 16).sum();
+        CodeBlock.Builder appends = CodeBlock.builder()
+            .add("new $T($L)", StringBuilder.class, capacity);
+        String separator = model.simpleName() + "{";
+        for (Map.Entry<String, TypeName> field : fields.entrySet()) {
+            appends.add("\n.append($S).append($L)", separator + field.getKey() + "=",
+                field.getValue() instanceof ArrayTypeName
+                    ? CodeBlock.of("$T.toString($L)", Arrays.class, access("this", field.getKey(), lazyFields))
+                    : access("this", field.getKey(), lazyFields));
+            separator = ", ";
+        }
+        if (fields.isEmpty()) {
+            appends.add("\n.append($S)", separator);
+        }
+        appends.add("\n.append('}')\n.toString()");
+
+        MethodSpec toString = MethodSpec.methodBuilder("toString")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement("return $L", appends.build())
+            .build();
+
+        builder
+            .addMethod(equals.build())
+            .addMethod(hashCode.build())
+            .addMethod(toString);
+    }
+
+    /**
+     * Reads a field of {@code owner}, through the getter for lazily parsed fields.
+     */
+    private CodeBlock access(final String owner, final String field, final Set<String> lazyFields) {
+        if (lazyFields.contains(field)) {
+            return CodeBlock.of("$L.get$L()", owner, capitalize(field));
+        }
+        return CodeBlock.of("$L.$N", owner, field);
+    }
+
+    private static CodeBlock fieldEquals(final CodeBlock value, final CodeBlock other, final TypeName type) {
+        if (type.equals(TypeName.DOUBLE) || type.equals(TypeName.FLOAT)) {
+            return CodeBlock.of("$T.compare($L, $L) == 0", type.box(), value, other);
+        } else if (type.isPrimitive()) {
+            return CodeBlock.of("$L == $L", value, other);
+        } else if (type instanceof ArrayTypeName) {
+            return CodeBlock.of("$T.equals($L, $L)", Arrays.class, value, other);
+        }
+        return CodeBlock.of("$T.equals($L, $L)", Objects.class, value, other);
+    }
+
+    private static CodeBlock fieldHashCode(final CodeBlock value, final TypeName type) {
+        if (type.isPrimitive()) {
+            return CodeBlock.of("$T.hashCode($L)", type.box(), value);
+        } else if (type instanceof ArrayTypeName) {
+            return CodeBlock.of("$T.hashCode($L)", Arrays.class, value);
+        }
+        return CodeBlock.of("$T.hashCode($L)", Objects.class, value);
+    }
+
+    private boolean isLazyTemporal(final TypeName type) {
+        return lazyTemporals && TEMPORAL_FORMATS.containsKey(type);
+    }
+
+    /**
+     * Adds a temporal property held as the string that was read, the model parses it on first access and caches
+     * the result, and writes the string back unchanged unless the value was set through the builder.
+     */
+    private void addLazyTemporal(final TypeSpec.Builder builder, final TypeSpec.Builder builderBuilder, final MethodSpec.Builder constructorBuilder,
+                                 final Schema p, final TypeName type, final TypeName builderType, final String name, final String propertyName) {
+        String raw = propertyName + CodecWriter.RAW_SUFFIX;
+        AnnotationSpec jsonProperty = AnnotationSpec.builder(JsonProperty.class).addMember("value", "$S", propertyName).build();
+
+        builder.addField(FieldSpec.builder(String.class, raw, Modifier.PRIVATE, Modifier.FINAL).build());
+        // volatile so that a value parsed on one thread is seen whole by the others, racing threads parse it at most once each
+        builder.addField(FieldSpec.builder(type, propertyName, Modifier.PRIVATE, Modifier.VOLATILE).build());
+
+        constructorBuilder
+            .addStatement("$N = builder.$N", raw, raw)
+            .addStatement("$N = builder.$N", propertyName, propertyName);
+
+        MethodSpec.Builder getter = MethodSpec.methodBuilder("get" + capitalize(propertyName))
+            .returns(type)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(JsonIgnore.class)
+            .addStatement("$T value = this.$N", type, propertyName)
+            .beginControlFlow("if (value == null && this.$N != null)", raw)
+            .addStatement("value = $T.parse(this.$N)", type, raw)
+            .addStatement("this.$N = value", propertyName)
+            .endControlFlow()
+            .addStatement("return value");
+        if (p.getDescription() != null) {
+            getter.addJavadoc(p.getDescription());
+        }
+        builder.addMethod(getter.build());
+
+        builder.addMethod(MethodSpec.methodBuilder("get" + capitalize(raw))
+            .addJavadoc("The $L property as it was read, or formatted if it was set through the builder.\n", propertyName)
+            .returns(String.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(jsonProperty)
+            .beginControlFlow("if (this.$N == null && this.$N != null)", raw, propertyName)
+            .addStatement("return $T.$L.format(this.$N)", DateTimeFormatter.class, TEMPORAL_FORMATS.get(type), propertyName)
+            .endControlFlow()
+            .addStatement("return this.$N", raw)
+            .build());
+
+        builderBuilder.addField(FieldSpec.builder(String.class, raw, Modifier.PRIVATE).build());
+        builderBuilder.addField(FieldSpec.builder(type, propertyName, Modifier.PRIVATE).build());
+
+        builderBuilder.addMethod(MethodSpec.methodBuilder(propertyName)
+            .returns(builderType)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(JsonIgnore.class)
+            .addJavadoc("Sets the $L property for the new $L.\n", propertyName, name)
+            .addJavadoc("@param $L the $L\n", propertyName, propertyName)
+            .addJavadoc("@returns a reference to this $T", builderType)
+            .addParameter(type, propertyName, Modifier.FINAL)
+            .addStatement("this.$N = $N", propertyName, propertyName)
+            .addStatement("this.$N = null", raw)
+            .addStatement("return this")
+            .build());
+
+        builderBuilder.addMethod(MethodSpec.methodBuilder(raw)
+            .returns(builderType)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(jsonProperty)
+            .addJavadoc("Sets the $L property for the new $L from its string form, parsed when first read.\n", propertyName, name)
+            .addJavadoc("@param $L the $L as an ISO string\n", raw, propertyName)
+            .addJavadoc("@returns a reference to this $T", builderType)
+            .addParameter(String.class, raw, Modifier.FINAL)
+            .addStatement("this.$N = $N", raw, raw)
+            .addStatement("this.$N = null", propertyName)
+            .addStatement("return this")
+            .build());
+    }
+
+    private void addConstructorStatement(final MethodSpec.Builder constructorBuilder, final TypeName type, final String propertyName, final String packageName) {
+        TypeName rawType = type instanceof ParameterizedTypeName ? ((ParameterizedTypeName) type).rawType : type;
+
+        if (type.isPrimitive()) {
+            // the builder holds it boxed, a missing required number must not silently become 0
+            constructorBuilder
+                .addStatement("$N = $T.requireNonNull(builder.$N, $S)", propertyName, Objects.class, propertyName, propertyName + " is required");
+        } else if (collections == CollectionStrategy.COMPACT && enumSetItem(type).isPresent()) {
+            constructorBuilder
+                .addStatement("$N = builder.$N == null || builder.$N.isEmpty() ? $T.emptySet() : $T.unmodifiableSet(builder.$N)",
+                    propertyName, propertyName, propertyName, Collections.class, Collections.class, propertyName);
+        } else if (enumSetItem(type).isPresent()) {
+            constructorBuilder
+                .addStatement("$N = builder.$N == null ? null : $T.unmodifiableSet(builder.$N)", propertyName, propertyName, Collections.class, propertyName);
+        } else if (collections == CollectionStrategy.COMPACT && rawType.equals(ClassName.get(List.class))) {
+            constructorBuilder
+                .addStatement("$N = $T.compactList(builder.$N)", propertyName, ClassName.get(packageName, COLLECTIONS_CLASS), propertyName);
+        } else if (collections == CollectionStrategy.COMPACT && rawType.equals(ClassName.get(Set.class))) {
+            constructorBuilder
+                .addStatement("$N = $T.compactSet(builder.$N)", propertyName, ClassName.get(packageName, COLLECTIONS_CLASS), propertyName);
+        } else {
+            constructorBuilder
+                .addStatement("$N = builder.$N", propertyName, propertyName);
+        }
+    }
+
     private void addBuilderField(TypeSpec.Builder builder, Schema p, TypeName type, String propertyName) {
-        FieldSpec.Builder fieldBuilder = FieldSpec.builder(type, propertyName)
+        FieldSpec.Builder fieldBuilder = FieldSpec.builder(type.isPrimitive() ? type.box() : type, propertyName)
             .addModifiers(Modifier.PRIVATE);
 
-        if (p instanceof ArraySchema) {
+        Optional<ClassName> enumItem = enumSetItem(type);
+        // compact builders leave collections unallocated until set, build() falls back to a shared empty one
+        boolean eager = collections == CollectionStrategy.DEFAULT;
+        if (type instanceof ArrayTypeName) {
+            fieldBuilder
+                .initializer("new $T[0]", ((ArrayTypeName) type).componentType);
+        } else if (enumItem.isPresent()) {
+            if (eager) {
+                fieldBuilder
+                    .initializer("$T.noneOf($T.class)", EnumSet.class, enumItem.get());
+            }
+        } else if (p instanceof ArraySchema && eager) {
             ArraySchema arraySchema = (ArraySchema) p;
+            Integer maxItems = arraySchema.getMaxItems();
+            boolean list = "list".equals(arraySchema.getFormat());
 
-            if ("list".equals(arraySchema.getFormat())) {
+            if (maxItems != null && maxItems <= MAX_INITIAL_CAPACITY) {
                 fieldBuilder
-                    .initializer("new $T<>()", ArrayList.class);
+                    .initializer("new $T<>($L)", list ? ArrayList.class : HashSet.class, list ? maxItems : (int) (maxItems / .75f) + 1);
             } else {
                 fieldBuilder
-                    .initializer("new $T<>()", HashSet.class);
+                    .initializer("new $T<>()", list ? ArrayList.class : HashSet.class);
             }
         } else if (p instanceof StringSchema) {
             StringSchema stringTypeDeclaration = (StringSchema) p;
@@ -693,12 +1519,10 @@ public class OpenApiGenerator {
     private void addBuilderFieldForAdditionalProperties(TypeSpec.Builder builder) {
         String propertyName = "additionalProperties";
         ParameterizedTypeName type = ParameterizedTypeName.get(Map.class, String.class, Object.class);
+        // allocated by the first addSingleProperty, most instances carry no additional properties
         FieldSpec.Builder fieldBuilder = FieldSpec.builder(type, propertyName)
             .addModifiers(Modifier.PRIVATE);
 
-            fieldBuilder
-                .initializer("new $T<>()", HashMap.class);
-
         FieldSpec field = fieldBuilder
             .build();
 
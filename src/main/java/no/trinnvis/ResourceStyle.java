@@ -0,0 +1,22 @@
+package no.trinnvis;
+
+/**
+ * How generated resource methods hand back their result.
+ */
+enum ResourceStyle {
+
+    /**
+     * Methods return a {@code CompletionStage} of the response, supported by JAX-RS 2.1 containers.
+     */
+    COMPLETION_STAGE,
+
+    /**
+     * Methods return nothing and take a {@code @Suspended AsyncResponse} that is resumed with the response.
+     */
+    ASYNC_RESPONSE,
+
+    /**
+     * Methods return the response and block the container thread until it is ready.
+     */
+    SYNCHRONOUS
+}
@@ -0,0 +1,310 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import io.swagger.oas.models.PathItem;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+import javax.annotation.Generated;
+import javax.lang.model.element.Modifier;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Generates a JAX-RS resource interface per group of operations, see {@link ApiOperation#group()}.
+ */
+final class ResourceWriter {
+
+    private static final Map<PathItem.HttpMethod, Class<?>> METHODS;
+    private static final Map<String, Class<?>> PARAMETERS;
+
+    /**
+     * Vendor extension of an operation, true streams its array response and false buffers it whatever the configuration.
+     */
+    static final String STREAMING = "x-streaming";
+    static final String ARRAY_OUTPUT = "JsonArrayOutput";
+
+    static {
+        Map<PathItem.HttpMethod, Class<?>> methods = new EnumMap<>(PathItem.HttpMethod.class);
+        methods.put(PathItem.HttpMethod.GET, GET.class);
+        methods.put(PathItem.HttpMethod.POST, POST.class);
+        methods.put(PathItem.HttpMethod.PUT, PUT.class);
+        methods.put(PathItem.HttpMethod.DELETE, DELETE.class);
+        methods.put(PathItem.HttpMethod.HEAD, HEAD.class);
+        methods.put(PathItem.HttpMethod.OPTIONS, OPTIONS.class);
+        METHODS = Collections.unmodifiableMap(methods);
+
+        Map<String, Class<?>> parameters = new HashMap<>();
+        parameters.put("path", PathParam.class);
+        parameters.put("query", QueryParam.class);
+        parameters.put("header", HeaderParam.class);
+        parameters.put("cookie", CookieParam.class);
+        PARAMETERS = Collections.unmodifiableMap(parameters);
+    }
+
+    private final String packageName;
+    private final ResourceStyle style;
+    private final Set<String> synchronousTags;
+    private final boolean streamArrays;
+
+    /**
+     * @param packageName the package of the generated resources
+     * @param style how methods hand back their result
+     * @param synchronousTags tags whose operations are generated {@link ResourceStyle#SYNCHRONOUS} whatever the style
+     * @param streamArrays stream every array response, not only those of operations marked {@value #STREAMING}
+     */
+    ResourceWriter(final String packageName, final ResourceStyle style, final Collection<String> synchronousTags, final boolean streamArrays) {
+        this.packageName = packageName;
+        this.style = style;
+        this.synchronousTags = new HashSet<>(synchronousTags);
+        this.streamArrays = streamArrays;
+    }
+
+    ClassName resourceOf(final String group) {
+        return ClassName.get(packageName, ApiOperation.camel(group) + "Api");
+    }
+
+    JavaFile resource(final String group, final List<ApiOperation> operations) {
+        TypeSpec.Builder builder = TypeSpec.interfaceBuilder(resourceOf(group))
+            .addJavadoc("The $L api.\n", group)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(AnnotationSpec.builder(Path.class).addMember("value", "$S", "/" + group).build())
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build());
+
+        Map<ApiOperation, String> names = methodNames(operations);
+        for (ApiOperation operation : operations) {
+            if (supports(operation)) {
+                builder.addMethod(method(operation, names.get(operation), METHODS.get(operation.method())));
+            }
+        }
+
+        return JavaFile.builder(packageName, builder.build())
+            .skipJavaLangImports(true)
+            .build();
+    }
+
+    /**
+     * Whether JAX-RS 2.0 has an annotation for the method of the operation, the others are skipped.
+     */
+    static boolean supports(final ApiOperation operation) {
+        return METHODS.containsKey(operation.method());
+    }
+
+    /**
+     * The method name of each operation of a group, numbered from 2 when several operations share a name.
+     */
+    static Map<ApiOperation, String> methodNames(final List<ApiOperation> operations) {
+        Map<ApiOperation, String> methodNames = new HashMap<>();
+        Set<String> names = new HashSet<>();
+        for (ApiOperation operation : operations) {
+            String name = operation.methodName();
+            for (int i = 2; !names.add(name); i++) {
+                name = operation.methodName() + i;
+            }
+            methodNames.put(operation, name);
+        }
+        return methodNames;
+    }
+
+    private MethodSpec method(final ApiOperation operation, final String name, final Class<?> httpMethod) {
+        MethodSpec.Builder method = MethodSpec.methodBuilder(name)
+            .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+            .addAnnotation(httpMethod);
+
+        if (operation.description() != null) {
+            method.addJavadoc("$L\n", operation.description().trim());
+        }
+
+        if (!operation.relativePath().isEmpty()) {
+            method.addAnnotation(AnnotationSpec.builder(Path.class).addMember("value", "$S", jaxRsPath(operation.relativePath())).build());
+        }
+        if (operation.body() != null) {
+            method.addAnnotation(AnnotationSpec.builder(Consumes.class).addMember("value", "$S", operation.bodyMediaType()).build());
+        }
+        if (operation.response() != null) {
+            method.addAnnotation(AnnotationSpec.builder(Produces.class).addMember("value", "$S", ApiOperation.JSON).build());
+        }
+
+        Set<String> parameterNames = new HashSet<>();
+        for (ApiOperation.ApiParameter parameter : operation.parameters()) {
+            parameterNames.add(parameter.javaName());
+            method.addParameter(ParameterSpec.builder(parameter.type(), parameter.javaName())
+                .addAnnotation(AnnotationSpec.builder(PARAMETERS.get(parameter.in())).addMember("value", "$S", parameter.name().replace("+", "")).build())
+                .build());
+            if (parameter.description() != null) {
+                method.addJavadoc("@param $L $L\n", parameter.javaName(), parameter.description().trim());
+            }
+        }
+
+        if (operation.body() != null) {
+            method.addParameter(operation.body(), parameterNames.contains("body") ? "requestBody" : "body");
+        }
+
+        TypeName response = streams(operation)
+            ? ParameterizedTypeName.get(ClassName.get(packageName, ARRAY_OUTPUT), elementOf(operation.response()))
+            : operation.response();
+        switch (styleOf(operation)) {
+            case COMPLETION_STAGE:
+                method.returns(ParameterizedTypeName.get(ClassName.get(CompletionStage.class),
+                    response != null ? response : ClassName.get(Void.class)));
+                break;
+            case ASYNC_RESPONSE:
+                method.addParameter(ParameterSpec.builder(AsyncResponse.class, "asyncResponse")
+                    .addAnnotation(Suspended.class)
+                    .build());
+                method.addJavadoc("@param asyncResponse resumed with the response\n");
+                break;
+            default:
+                method.returns(response != null ? response : TypeName.VOID);
+        }
+
+        return method.build();
+    }
+
+    /**
+     * Whether the array response of the operation is written element by element by a {@value #ARRAY_OUTPUT}
+     * rather than returned as a collection.
+     */
+    boolean streams(final ApiOperation operation) {
+        if (elementOf(operation.response()) == null) {
+            return false;
+        }
+        Object streaming = operation.operation().getExtensions() != null ? operation.operation().getExtensions().get(STREAMING) : null;
+        return streaming != null ? Boolean.parseBoolean(String.valueOf(streaming)) : streamArrays;
+    }
+
+    private static TypeName elementOf(final TypeName response) {
+        if (response instanceof ParameterizedTypeName) {
+            ParameterizedTypeName collection = (ParameterizedTypeName) response;
+            if (collection.rawType.equals(ClassName.get(List.class)) || collection.rawType.equals(ClassName.get(Set.class))) {
+                return collection.typeArguments.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A {@link StreamingOutput} writing the elements of an iterator or stream as a JSON array, one element at a time,
+     * so that a large response is never held in memory as a whole.
+     */
+    JavaFile arrayOutput() {
+        ClassName self = ClassName.get(packageName, ARRAY_OUTPUT);
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeName elements = ParameterizedTypeName.get(ClassName.get(Iterator.class), WildcardTypeName.subtypeOf(t));
+        TypeName stream = ParameterizedTypeName.get(ClassName.get(Stream.class), WildcardTypeName.subtypeOf(t));
+        TypeName type = ParameterizedTypeName.get(ClassName.get(Class.class), t);
+        TypeName result = ParameterizedTypeName.get(self, t);
+
+        TypeSpec output = TypeSpec.classBuilder(self)
+            .addJavadoc("Writes elements as a JSON array one at a time, flushing only when the output buffer fills.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
+            .addTypeVariable(t)
+            .addSuperinterface(StreamingOutput.class)
+            .addField(ObjectWriter.class, "writer", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(elements, "elements", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Stream.class), WildcardTypeName.subtypeOf(Object.class)), "stream", Modifier.PRIVATE, Modifier.FINAL).build())
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(ObjectWriter.class, "writer", Modifier.FINAL)
+                .addParameter(elements, "elements", Modifier.FINAL)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Stream.class), WildcardTypeName.subtypeOf(Object.class)), "stream", Modifier.FINAL)
+                .addStatement("this.writer = writer.without($T.FLUSH_AFTER_WRITE_VALUE)", SerializationFeature.class)
+                .addStatement("this.elements = elements")
+                .addStatement("this.stream = stream")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("of")
+                .addJavadoc("Writes the remaining elements of the iterator.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(t)
+                .addParameter(ObjectMapper.class, "mapper", Modifier.FINAL)
+                .addParameter(type, "type", Modifier.FINAL)
+                .addParameter(elements, "elements", Modifier.FINAL)
+                .returns(result)
+                .addStatement("return new $T<>(mapper.writerFor(type), elements, null)", self)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("of")
+                .addJavadoc("Writes the elements of the stream and closes it when done.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(t)
+                .addParameter(ObjectMapper.class, "mapper", Modifier.FINAL)
+                .addParameter(type, "type", Modifier.FINAL)
+                .addParameter(stream, "elements", Modifier.FINAL)
+                .returns(result)
+                .addStatement("return new $T<>(mapper.writerFor(type), elements.iterator(), elements)", self)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("write")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(OutputStream.class, "output", Modifier.FINAL)
+                .addException(IOException.class)
+                .beginControlFlow("try ($T generator = writer.getFactory().createGenerator(output))", JsonGenerator.class)
+                .addComment("the container owns the entity stream")
+                .addStatement("generator.disable($T.Feature.AUTO_CLOSE_TARGET)", JsonGenerator.class)
+                .addStatement("generator.writeStartArray()")
+                .beginControlFlow("while (elements.hasNext())")
+                .addStatement("writer.writeValue(generator, elements.next())")
+                .endControlFlow()
+                .addStatement("generator.writeEndArray()")
+                .nextControlFlow("finally")
+                .beginControlFlow("if (stream != null)")
+                .addStatement("stream.close()")
+                .endControlFlow()
+                .endControlFlow()
+                .build())
+            .build();
+
+        return JavaFile.builder(packageName, output)
+            .skipJavaLangImports(true)
+            .build();
+    }
+
+    private ResourceStyle styleOf(final ApiOperation operation) {
+        return synchronousTags.contains(operation.tag()) ? ResourceStyle.SYNCHRONOUS : style;
+    }
+
+    /**
+     * The JAX-RS form of a path template, a greedy {@code {name+}} becomes {@code {name: .+}}.
+     */
+    static String jaxRsPath(final String path) {
+        return path.replaceAll("\\{([^}+]+)\\+}", "{$1: .+}");
+    }
+}
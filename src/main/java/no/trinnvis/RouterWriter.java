@@ -0,0 +1,365 @@
+package no.trinnvis;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Generated;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Generates a router that matches a request method and path to an operation by walking a trie of path segments iteratively.
+ */
+final class RouterWriter {
+
+    static final String ROUTER = "ApiRouter";
+
+    private final String packageName;
+
+    RouterWriter(final String packageName) {
+        this.packageName = packageName;
+    }
+
+    JavaFile router(final List<ApiOperation> operations) {
+        ClassName router = ClassName.get(packageName, ROUTER);
+        ClassName node = router.nestedClass("Node");
+        ClassName target = router.nestedClass("Target");
+        ClassName route = router.nestedClass("Route");
+
+        Map<String, List<ApiOperation>> groups = new TreeMap<>();
+        operations.forEach(operation -> groups.computeIfAbsent(operation.group(), g -> new ArrayList<>()).add(operation));
+
+        TypeSpec.Builder builder = TypeSpec.classBuilder(router)
+            .addJavadoc("Matches a request method and path to the id of an operation and the values of its path parameters.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
+            .addField(FieldSpec.builder(node, "ROOT", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T()", node)
+                .build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+
+        RouterCode code = new RouterCode(node);
+        groups.forEach((group, grouped) -> {
+            Tree<String> tree = new Tree<>(group);
+            Map<String, List<ApiOperation>> paths = new HashMap<>();
+            for (ApiOperation operation : grouped) {
+                if (!ResourceWriter.supports(operation)) {
+                    // the resource has no method for it
+                    continue;
+                }
+                List<String> segments = segments(operation.relativePath());
+                tree.insertPath(segments);
+                paths.computeIfAbsent(String.join("/", segments), p -> new ArrayList<>()).add(operation);
+            }
+
+            tree.accept(new RouterVisitor(code, paths, ResourceWriter.methodNames(grouped), null, null));
+        });
+
+        CodeBlock.Builder initializer = CodeBlock.builder();
+        List<CodeBlock> methods = code.methods();
+        for (int i = 0; i < methods.size(); i++) {
+            builder.addMethod(MethodSpec.methodBuilder("route" + i)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addCode(methods.get(i))
+                .build());
+            initializer.addStatement("route$L()", i);
+        }
+        builder.addStaticBlock(initializer.build());
+
+        TypeName strings = ParameterizedTypeName.get(Map.class, String.class, String.class);
+
+        builder.addMethod(MethodSpec.methodBuilder("route")
+            .addJavadoc("The operation matching the request, literal segments are preferred over templates.\n\n"
+                + "@param method the http method in upper case\n"
+                + "@param path the undecoded request path, starting with the group\n"
+                + "@return the matching route, null if none matches\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(String.class, "method", Modifier.FINAL)
+            .addParameter(String.class, "path", Modifier.FINAL)
+            .returns(route)
+            .addStatement("String relative = path.startsWith($S) ? path.substring(1) : path", "/")
+            .addStatement("String[] segments = relative.isEmpty() ? new String[0] : relative.split($S)", "/")
+            .addStatement("return match(ROOT, method, segments, 0, new String[segments.length], 0)")
+            .build());
+
+        builder.addMethod(MethodSpec.methodBuilder("match")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(node, "node", Modifier.FINAL)
+            .addParameter(String.class, "method", Modifier.FINAL)
+            .addParameter(String[].class, "segments", Modifier.FINAL)
+            .addParameter(int.class, "index", Modifier.FINAL)
+            .addParameter(String[].class, "values", Modifier.FINAL)
+            .addParameter(int.class, "captured", Modifier.FINAL)
+            .returns(route)
+            .beginControlFlow("if (index == segments.length)")
+            .addStatement("$T operation = node.operations.get(method)", target)
+            .addStatement("return operation != null ? operation.route(values, captured) : null")
+            .endControlFlow()
+            .addStatement("$T literal = node.literals.get(segments[index])", node)
+            .beginControlFlow("if (literal != null)")
+            .addStatement("$T route = match(literal, method, segments, index + 1, values, captured)", route)
+            .beginControlFlow("if (route != null)")
+            .addStatement("return route")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if (node.template != null)")
+            .addStatement("values[captured] = segments[index]")
+            .addStatement("$T route = match(node.template, method, segments, index + 1, values, captured + 1)", route)
+            .beginControlFlow("if (route != null)")
+            .addStatement("return route")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if (node.greedy != null)")
+            .addStatement("$T operation = node.greedy.operations.get(method)", target)
+            .beginControlFlow("if (operation != null)")
+            .addStatement("values[captured] = String.join($S, $T.asList(segments).subList(index, segments.length))", "/", Arrays.class)
+            .addStatement("return operation.route(values, captured + 1)")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return null")
+            .build());
+
+        builder.addType(TypeSpec.classBuilder(node)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), node), "literals", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T<>()", HashMap.class)
+                .build())
+            .addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), target), "operations", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T<>()", HashMap.class)
+                .build())
+            .addField(node, "template", Modifier.PRIVATE)
+            .addField(node, "greedy", Modifier.PRIVATE)
+            .addMethod(MethodSpec.methodBuilder("literal")
+                .addParameter(String.class, "segment", Modifier.FINAL)
+                .returns(node)
+                .addStatement("return literals.computeIfAbsent(segment, s -> new $T())", node)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("template")
+                .returns(node)
+                .beginControlFlow("if (template == null)")
+                .addStatement("template = new $T()", node)
+                .endControlFlow()
+                .addStatement("return template")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("greedy")
+                .returns(node)
+                .beginControlFlow("if (greedy == null)")
+                .addStatement("greedy = new $T()", node)
+                .endControlFlow()
+                .addStatement("return greedy")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("operation")
+                .varargs()
+                .addParameter(String.class, "method", Modifier.FINAL)
+                .addParameter(String.class, "id", Modifier.FINAL)
+                .addParameter(String[].class, "parameters", Modifier.FINAL)
+                .addStatement("operations.put(method, new $T(id, parameters))", target)
+                .build())
+            .build());
+
+        builder.addType(TypeSpec.classBuilder(target)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(String.class, "id", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(String[].class, "parameters", Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addParameter(String.class, "id", Modifier.FINAL)
+                .addParameter(String[].class, "parameters", Modifier.FINAL)
+                .addStatement("this.id = id")
+                .addStatement("this.parameters = parameters")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("route")
+                .addParameter(String[].class, "values", Modifier.FINAL)
+                .addParameter(int.class, "captured", Modifier.FINAL)
+                .returns(route)
+                .addStatement("$T parameters = new $T<>()", strings, LinkedHashMap.class)
+                .beginControlFlow("for (int i = 0; i < captured; i++)")
+                .addStatement("parameters.put(this.parameters[i], values[i])")
+                .endControlFlow()
+                .addStatement("return new $T(id, parameters)", route)
+                .build())
+            .build());
+
+        builder.addType(TypeSpec.classBuilder(route)
+            .addJavadoc("An operation id with the values of its path parameters.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addField(String.class, "operation", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(strings, "parameters", Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(String.class, "operation", Modifier.FINAL)
+                .addParameter(strings, "parameters", Modifier.FINAL)
+                .addStatement("this.operation = operation")
+                .addStatement("this.parameters = $T.unmodifiableMap(parameters)", Collections.class)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("operation")
+                .addJavadoc("The group and method name of the operation, such as {@code accounts.getSearch}.\n")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addStatement("return operation")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("parameters")
+                .addJavadoc("The undecoded path parameters by name.\n")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(strings)
+                .addStatement("return parameters")
+                .build())
+            .build());
+
+        return JavaFile.builder(packageName, builder.build())
+            .skipJavaLangImports(true)
+            .build();
+    }
+
+    private static List<String> segments(final String relativePath) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : relativePath.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * The statements building the trie, split over methods of at most {@link #MAX_STATEMENTS} statements so that
+     * each stays well below the size limit of the class file format however the paths are grouped. A node is held
+     * in a local variable, declared in each method using it by looking it up from its parent again.
+     */
+    private static final class RouterCode {
+
+        private static final int MAX_STATEMENTS = 500;
+
+        private final ClassName node;
+        private final List<CodeBlock> methods = new ArrayList<>();
+        private final Map<String, String> parents = new HashMap<>();
+        private final Map<String, CodeBlock> lookups = new HashMap<>();
+        private final Set<String> declared = new HashSet<>();
+        private CodeBlock.Builder method;
+        private int statements;
+
+        RouterCode(final ClassName node) {
+            this.node = node;
+        }
+
+        /**
+         * A variable for a node, declared once an operation is added to it or to a node below it.
+         */
+        String node(final String parent, final CodeBlock lookup) {
+            String variable = "n" + lookups.size();
+            parents.put(variable, parent);
+            lookups.put(variable, lookup);
+            return variable;
+        }
+
+        void operation(final String variable, final CodeBlock operation) {
+            if (method == null || statements >= MAX_STATEMENTS) {
+                if (method != null) {
+                    methods.add(method.build());
+                }
+                method = CodeBlock.builder();
+                statements = 0;
+                declared.clear();
+            }
+            declare(variable);
+            add(operation);
+        }
+
+        private void declare(final String variable) {
+            if (variable == null || declared.contains(variable)) {
+                return;
+            }
+            declare(parents.get(variable));
+            add(CodeBlock.of("$T $L = $L", node, variable, lookups.get(variable)));
+            declared.add(variable);
+        }
+
+        private void add(final CodeBlock statement) {
+            method.addStatement("$L", statement);
+            statements++;
+        }
+
+        List<CodeBlock> methods() {
+            List<CodeBlock> all = new ArrayList<>(methods);
+            if (method != null) {
+                all.add(method.build());
+            }
+            return all;
+        }
+    }
+
+    /**
+     * Adds a node of the trie per tree node, and the operations of its path.
+     */
+    private static final class RouterVisitor implements Visitor<String> {
+
+        private final RouterCode code;
+        private final Map<String, List<ApiOperation>> paths;
+        private final Map<ApiOperation, String> names;
+        private final String parent;
+        private final String parentPath;
+        private String variable;
+        private String path;
+
+        /**
+         * @param paths the operations by their relative path, segments joined without leading or trailing slashes
+         * @param parent the variable of the parent node, null for the group itself
+         * @param parentPath the relative path of the parent node, null for the group itself
+         */
+        RouterVisitor(final RouterCode code, final Map<String, List<ApiOperation>> paths, final Map<ApiOperation, String> names,
+                      final String parent, final String parentPath) {
+            this.code = code;
+            this.paths = paths;
+            this.names = names;
+            this.parent = parent;
+            this.parentPath = parentPath;
+        }
+
+        public Visitor<String> visitTree(final Tree<String> tree) {
+            return new RouterVisitor(code, paths, names, variable, path);
+        }
+
+        public void visitData(final Tree<String> tree, final String data) {
+            CodeBlock lookup;
+            if (parent == null) {
+                path = "";
+                lookup = data.isEmpty() ? CodeBlock.of("ROOT") : CodeBlock.of("ROOT.literal($S)", data);
+            } else {
+                path = parentPath.isEmpty() ? data : parentPath + "/" + data;
+                if (data.startsWith("{") && data.endsWith("+}")) {
+                    lookup = CodeBlock.of("$L.greedy()", parent);
+                } else if (data.startsWith("{")) {
+                    lookup = CodeBlock.of("$L.template()", parent);
+                } else {
+                    lookup = CodeBlock.of("$L.literal($S)", parent, data);
+                }
+            }
+            variable = code.node(parent, lookup);
+
+            for (ApiOperation operation : paths.getOrDefault(path, Collections.emptyList())) {
+                CodeBlock.Builder statement = CodeBlock.builder()
+                    .add("$L.operation($S, $S", variable, operation.method().name(), operation.group() + "." + names.get(operation));
+                for (String segment : segments(operation.relativePath())) {
+                    if (segment.startsWith("{")) {
+                        statement.add(", $S", segment.substring(1, segment.length() - 1).replace("+", ""));
+                    }
+                }
+                code.operation(variable, statement.add(")").build());
+            }
+        }
+    }
+}
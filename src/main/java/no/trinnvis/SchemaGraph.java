@@ -0,0 +1,117 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.swagger.oas.models.media.ArraySchema;
+import io.swagger.oas.models.media.Schema;
+import io.swagger.util.Json;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The {@code $ref} dependencies between component schemas together with a content hash of each schema.
+ */
+final class SchemaGraph {
+
+    private final Map<String, String> hashes = new TreeMap<>();
+    private final Map<String, Set<String>> dependencies = new TreeMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    static SchemaGraph of(final Map<String, Schema> schemas) {
+        SchemaGraph graph = new SchemaGraph();
+        schemas.forEach((name, schema) -> {
+            graph.hashes.put(name, hash(schema));
+
+            Set<String> references = new TreeSet<>();
+            collectReferences(schema, references, Collections.newSetFromMap(new IdentityHashMap<>()));
+            graph.dependencies.put(name, references);
+            references.forEach(reference -> graph.dependents.computeIfAbsent(reference, r -> new HashSet<>()).add(name));
+        });
+        return graph;
+    }
+
+    private static void collectReferences(final Schema schema, final Set<String> references, final Set<Schema> visited) {
+        if (schema == null || !visited.add(schema)) {
+            return;
+        }
+
+        if (schema.get$ref() != null) {
+            references.add(schema.get$ref().substring(schema.get$ref().lastIndexOf('/') + 1));
+        }
+
+        if (schema.getProperties() != null) {
+            for (Object property : schema.getProperties().values()) {
+                collectReferences((Schema) property, references, visited);
+            }
+        }
+
+        if (schema instanceof ArraySchema) {
+            collectReferences(((ArraySchema) schema).getItems(), references, visited);
+        }
+
+        collectReferences(schema.getAdditionalProperties(), references, visited);
+    }
+
+    private static String hash(final Schema schema) {
+        try {
+            return GenerationFingerprint.hex(GenerationFingerprint.newDigest()
+                .digest(Json.mapper().writeValueAsString(schema).getBytes(StandardCharsets.UTF_8)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Set<String> names() {
+        return hashes.keySet();
+    }
+
+    String hashOf(final String name) {
+        return hashes.get(name);
+    }
+
+    Set<String> dependenciesOf(final String name) {
+        return dependencies.get(name);
+    }
+
+    /**
+     * The schemas that must be regenerated: those that are new or changed since the previous state, and
+     * every schema that depends on one of them or on a schema that has been removed.
+     *
+     * @param stale schemas to regenerate regardless of their hash, e.g. because their output is missing
+     */
+    Set<String> affected(final GenerationState previous, final Set<String> stale) {
+        Set<String> changed = new HashSet<>(stale);
+        for (String name : names()) {
+            if (!hashOf(name).equals(previous.hashOf(name))) {
+                changed.add(name);
+            }
+        }
+        for (String name : previous.names()) {
+            if (!hashes.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+
+        Set<String> affected = new TreeSet<>();
+        Deque<String> pending = new ArrayDeque<>(changed);
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            if (!affected.add(name)) {
+                continue;
+            }
+
+            pending.addAll(dependents.getOrDefault(name, Collections.emptySet()));
+        }
+
+        affected.retainAll(names());
+        return affected;
+    }
+}
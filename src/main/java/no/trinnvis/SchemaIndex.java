@@ -0,0 +1,48 @@
+package no.trinnvis;
+
+import io.swagger.oas.models.media.Schema;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup tables over the component schemas of a parsed specification, built once after parsing.
+ */
+final class SchemaIndex {
+
+    private final Map<String, Schema> schemas;
+    private final Map<Schema, String> names = new IdentityHashMap<>();
+    private final Map<String, Schema> references = new ConcurrentHashMap<>();
+
+    SchemaIndex(final Map<String, Schema> schemas) {
+        this.schemas = schemas;
+        schemas.forEach((name, schema) -> names.put(schema, name));
+    }
+
+    /**
+     * The component name of the schema, if it is one of the component schemas.
+     */
+    Optional<String> nameOf(final Schema schema) {
+        return Optional.ofNullable(names.get(schema));
+    }
+
+    /**
+     * The component schema a {@code $ref} points to, or the schema itself if it is not a reference.
+     */
+    Schema dereference(final Schema schema) {
+        String ref = schema.get$ref();
+        if (ref == null) {
+            return schema;
+        }
+
+        Schema resolved = references.get(ref);
+        if (resolved == null) {
+            resolved = schemas.get(ref.substring(ref.lastIndexOf('/') + 1));
+            if (resolved != null) {
+                references.put(ref, resolved);
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,148 @@
+package no.trinnvis;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes generated sources below a root directory, leaving files whose content is unchanged
+ * untouched so that their timestamps do not trigger recompilation. Safe for use from several threads.
+ */
+final class SourceWriter {
+
+    /**
+     * The value of the {@code @Generated} annotation on every generated type, which marks the sources that may be
+     * deleted as orphans.
+     */
+    static final String GENERATED = "Generated from OpenApi";
+
+    private static final String MARKER = "@Generated(\"" + GENERATED + "\")";
+
+    private final Path root;
+    private final GenerationMetrics metrics;
+    private final Set<Path> generated = ConcurrentHashMap.newKeySet();
+
+    SourceWriter(final Path root) {
+        this(root, new GenerationMetrics());
+    }
+
+    SourceWriter(final Path root, final GenerationMetrics metrics) {
+        this.root = root;
+        this.metrics = metrics;
+    }
+
+    GenerationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the file unless the file on disk already has the same content.
+     *
+     * @return true if the file was written
+     */
+    boolean write(final JavaFile javaFile) throws IOException {
+        Path path = pathOf(javaFile.packageName, javaFile.typeSpec.name);
+        byte[] content = javaFile.toString().getBytes(StandardCharsets.UTF_8);
+
+        generated.add(path);
+
+        if (Files.isRegularFile(path) && Files.size(path) == content.length
+            && Arrays.equals(Files.readAllBytes(path), content)) {
+            metrics.fileSkipped();
+            return false;
+        }
+
+        writeAtomically(path, content);
+        metrics.fileWritten(content.length);
+        return true;
+    }
+
+    /**
+     * Writes the content next to the file and moves it into place, so that a reader never sees a partly written
+     * file and concurrent writers of the same file leave one complete version.
+     */
+    static void writeAtomically(final Path path, final byte[] content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling("." + path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            Files.write(temporary, content);
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Keeps an existing source from being deleted as an orphan although it was not written in this run.
+     */
+    void retain(final ClassName className) {
+        generated.add(pathOf(className.packageName(), className.simpleName()));
+    }
+
+    boolean exists(final ClassName className) {
+        return Files.isRegularFile(pathOf(className.packageName(), className.simpleName()));
+    }
+
+    /**
+     * Deletes the generated sources below the root that were neither written nor retained by this writer. A source
+     * without the {@code @Generated} marker was not written by the plugin and is left alone.
+     *
+     * @return the deleted files
+     */
+    List<Path> deleteOrphans() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+
+        List<Path> candidates;
+        try (Stream<Path> files = Files.walk(root)) {
+            candidates = files
+                .filter(path -> path.toString().endsWith(".java"))
+                .filter(path -> !generated.contains(path))
+                .collect(Collectors.toList());
+        }
+
+        List<Path> orphans = new ArrayList<>();
+        for (Path candidate : candidates) {
+            if (isGenerated(candidate)) {
+                Files.delete(candidate);
+                orphans.add(candidate);
+            }
+        }
+
+        return orphans;
+    }
+
+    private static boolean isGenerated(final Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).contains(MARKER);
+    }
+
+    private Path pathOf(final String packageName, final String simpleName) {
+        Path directory = root;
+        if (!packageName.isEmpty()) {
+            for (String component : packageName.split("\\.")) {
+                directory = directory.resolve(component);
+            }
+        }
+
+        return directory.resolve(simpleName + ".java");
+    }
+}
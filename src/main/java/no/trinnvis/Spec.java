@@ -0,0 +1,104 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Specifications to generate and the package to generate them in, configured as a {@code <spec>} of the
+ * {@code specs} parameter.
+ */
+public class Spec {
+
+    /**
+     * Placeholder in the package name for the name of the specification file.
+     */
+    static final String NAME = "{name}";
+
+    /**
+     * The specification, or a glob such as {@code src/main/openapi/*.yaml} matching several, relative to the
+     * project directory.
+     */
+    private String input;
+
+    /**
+     * The package of the models, {@code {name}} is replaced by the file name of the specification without its
+     * extension, e.g. {@code com.example.{name}.api}.
+     */
+    private String packageName;
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(final String input) {
+        this.input = input;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(final String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * The specification files the input matches, sorted by path.
+     */
+    List<File> files(final File basedir) throws IOException {
+        Path pattern = basedir.toPath().resolve(input).normalize();
+        Path directory = pattern.getRoot();
+        for (Path component : pattern) {
+            if (isGlob(component.toString())) {
+                break;
+            }
+            directory = directory == null ? component : directory.resolve(component);
+        }
+
+        if (directory == null || directory.equals(pattern)) {
+            return pattern.toFile().isFile() ? Collections.singletonList(pattern.toFile()) : Collections.emptyList();
+        }
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths
+                .filter(Files::isRegularFile)
+                .filter(matcher::matches)
+                .sorted()
+                .map(Path::toFile)
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The package of the models generated from the file.
+     */
+    String packageOf(final File file) {
+        String name = file.getName().replaceFirst("\\.[^.]*$", "").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "");
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            name = "_" + name;
+        }
+        return packageName.replace(NAME, name);
+    }
+
+    private static boolean isGlob(final String component) {
+        return component.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    @Override
+    public String toString() {
+        return input + " -> " + packageName;
+    }
+}
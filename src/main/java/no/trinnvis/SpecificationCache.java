@@ -0,0 +1,182 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.oas.models.OpenAPI;
+import io.swagger.parser.OpenAPIParser;
+import io.swagger.parser.models.SwaggerParseResult;
+import io.swagger.parser.v3.ObjectMapperFactory;
+import io.swagger.parser.v3.OpenAPIV3Parser;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Parsed specifications shared by every execution of the plugin in the build process, so that modules
+ * generating from the same specification parse it once.
+ *
+ * <p>Entries are keyed by the canonical path of the specification and hold the digest of the files it consists
+ * of, the specification and every file it references through {@code $ref} as in the {@link GenerationFingerprint}.
+ * A change to any of them parses the specification again and replaces the entry. Parsing happens outside the map,
+ * executions asking for an entry being parsed wait for it. The parsed document is also kept as a gzip compressed
+ * JSON snapshot named by the input and the digest, which later builds read instead of parsing the YAML, and which
+ * replaces the previous snapshot of the input. Cached models are shared and must not be modified.</p>
+ */
+final class SpecificationCache {
+
+    private static final ConcurrentMap<File, Entry> SPECIFICATIONS = new ConcurrentHashMap<>();
+    private static final String SNAPSHOT_SUFFIX = ".json.gz";
+
+    private SpecificationCache() {
+    }
+
+    /**
+     * The parsed specification, from the cache when none of its files have changed.
+     *
+     * @param snapshots the folder of the snapshots, null to neither read nor write them
+     */
+    static Specification parse(final File input, final File snapshots) throws IOException {
+        File file = input.getCanonicalFile();
+        String digest = GenerationFingerprint.digest(file.getParentFile(), GenerationFingerprint.referencedFiles(file));
+
+        while (true) {
+            Entry cached = SPECIFICATIONS.get(file);
+            if (cached != null && cached.digest.equals(digest)) {
+                return cached.get();
+            }
+
+            Entry entry = new Entry(digest, new FutureTask<>(() -> load(file, digest, snapshots)));
+            boolean added = cached == null ? SPECIFICATIONS.putIfAbsent(file, entry) == null : SPECIFICATIONS.replace(file, cached, entry);
+            if (!added) {
+                // another execution got there first, use its entry if it is for the same content
+                continue;
+            }
+
+            entry.task.run();
+            try {
+                return entry.get();
+            } catch (IOException | RuntimeException e) {
+                // the next execution tries again
+                SPECIFICATIONS.remove(file, entry);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forgets every parsed specification, later parses read the snapshots or parse again.
+     */
+    static void clear() {
+        SPECIFICATIONS.clear();
+    }
+
+    private static Specification load(final File file, final String digest, final File snapshots) throws IOException {
+        ObjectMapper json = ObjectMapperFactory.createJson();
+        String prefix = GenerationFingerprint.hex(GenerationFingerprint.newDigest().digest(file.getPath().getBytes(StandardCharsets.UTF_8))).substring(0, 16) + "-";
+        File snapshot = snapshots != null ? new File(snapshots, prefix + digest + SNAPSHOT_SUFFIX) : null;
+        if (snapshot != null && snapshot.isFile()) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot.toPath()))) {
+                return new Specification(new OpenAPIV3Parser().readWithInfo(json.readTree(in)));
+            }
+        }
+
+        // the same steps as the parser takes for a local file, keeping the document for the snapshot
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        JsonNode document = (text.trim().startsWith("{") ? json : ObjectMapperFactory.createYaml()).readTree(text);
+        if (!document.has("openapi")) {
+            // converted from an earlier version, there is no document to snapshot
+            return new Specification(new OpenAPIParser().readLocation(file.toURI().toString(), null, null));
+        }
+
+        SwaggerParseResult result = new OpenAPIV3Parser().readWithInfo(document);
+        if (snapshot != null) {
+            Files.createDirectories(snapshots.toPath());
+            Path temporary = Files.createTempFile(snapshots.toPath(), prefix, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+                json.writeValue(out, document);
+            }
+            Files.move(temporary, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            try (DirectoryStream<Path> previous = Files.newDirectoryStream(snapshots.toPath(), prefix + "*" + SNAPSHOT_SUFFIX)) {
+                for (Path old : previous) {
+                    if (!old.equals(snapshot.toPath())) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+            }
+        }
+        return new Specification(result);
+    }
+
+    /**
+     * A specification being parsed or parsed, for the digest of its files.
+     */
+    private static final class Entry {
+        private final String digest;
+        private final FutureTask<Specification> task;
+
+        private Entry(final String digest, final FutureTask<Specification> task) {
+            this.digest = digest;
+            this.task = task;
+        }
+
+        Specification get() throws IOException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the specification to be parsed");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A parsed specification with the index of its component schemas.
+     */
+    static final class Specification {
+        private final OpenAPI openAPI;
+        private final SchemaIndex schemaIndex;
+        private final List<String> messages;
+
+        private Specification(final SwaggerParseResult result) {
+            this.openAPI = result.getOpenAPI();
+            this.schemaIndex = openAPI != null ? new SchemaIndex(openAPI.getComponents().getSchemas()) : null;
+            this.messages = result.getMessages() != null ? Collections.unmodifiableList(new ArrayList<>(result.getMessages())) : Collections.emptyList();
+        }
+
+        OpenAPI openAPI() {
+            return openAPI;
+        }
+
+        SchemaIndex schemaIndex() {
+            return schemaIndex;
+        }
+
+        List<String> messages() {
+            return messages;
+        }
+    }
+}
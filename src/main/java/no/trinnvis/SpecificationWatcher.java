@@ -0,0 +1,87 @@
+package no.trinnvis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for changes to a set of files, watching the directories that hold them. A burst of changes, such as an
+ * editor saving through a temporary file, is reported once the files have been quiet for the debounce time.
+ */
+final class SpecificationWatcher implements Closeable {
+
+    private final WatchService service;
+    private final long debounceMillis;
+    private final Set<Path> directories = new HashSet<>();
+    private final Set<File> files = new HashSet<>();
+
+    SpecificationWatcher(final long debounceMillis) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Watches the files, in place of those watched before.
+     */
+    void watch(final Collection<File> watched) throws IOException {
+        files.clear();
+        for (File file : watched) {
+            File canonical = file.getCanonicalFile();
+            files.add(canonical);
+
+            Path directory = canonical.getParentFile().toPath();
+            if (directories.add(directory)) {
+                directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    /**
+     * Waits for a watched file to change and then for the debounce time to pass without further changes.
+     *
+     * @return the files that changed
+     */
+    Set<File> await() throws InterruptedException {
+        Set<File> changed = new TreeSet<>();
+        WatchKey key = service.take();
+        while (key != null) {
+            collect(key, changed);
+            key = changed.isEmpty() ? service.take() : service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+
+    private void collect(final WatchKey key, final Set<File> changed) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, any of the files may have changed
+                files.stream().filter(file -> file.getParentFile().toPath().equals(directory)).forEach(changed::add);
+                continue;
+            }
+
+            File file = directory.resolve((Path) event.context()).toFile();
+            if (files.contains(file)) {
+                changed.add(file);
+            }
+        }
+        key.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+}
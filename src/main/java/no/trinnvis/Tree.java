@@ -1,40 +1,72 @@
 package no.trinnvis;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 class Tree<T> implements Visitable<T> {
 
-    // NB: LinkedHashSet preserves insertion order
-    private final Set<Tree> children = new LinkedHashSet<>();
+    // NB: LinkedHashMap preserves insertion order
+    private final Map<T, Tree<T>> children = new LinkedHashMap<>();
     private final T data;
 
     Tree(T data) {
         this.data = data;
     }
 
+    /**
+     * Visits the trees depth first in insertion order, with an explicit stack so that deep trees
+     * cannot overflow the call stack.
+     */
     public void accept(Visitor<T> visitor) {
-        visitor.visitData(this, data);
+        Deque<Visit<T>> pending = new ArrayDeque<>();
+        pending.push(new Visit<>(this, null));
 
-        for (Tree child : children) {
-            Visitor<T> childVisitor = visitor.visitTree(child);
-            child.accept(childVisitor);
-        }
-    }
+        while (!pending.isEmpty()) {
+            Visit<T> visit = pending.pop();
+            Visitor<T> current = visit.parent == null ? visitor : visit.parent.visitTree(visit.tree);
+            current.visitData(visit.tree, visit.tree.data);
 
-    Tree<T> child(T data) {
-        for (Tree child: children ) {
-            if (child.data.equals(data)) {
-                return child;
+            // pushed in reverse so that the first child is visited first
+            List<Tree<T>> reversed = new ArrayList<>(visit.tree.children.values());
+            for (int i = reversed.size() - 1; i >= 0; i--) {
+                pending.push(new Visit<>(reversed.get(i), current));
             }
         }
+    }
 
-        return child(new Tree<>(data));
+    Tree<T> child(T data) {
+        return children.computeIfAbsent(data, Tree::new);
     }
 
-    Tree child(Tree<T> child) {
-        children.add(child);
+    Tree<T> child(Tree<T> child) {
+        children.put(child.data, child);
         return child;
     }
-}
 
+    /**
+     * Adds the path below this tree, reusing the trees already present.
+     *
+     * @return the tree of the last element of the path, this tree if it is empty
+     */
+    Tree<T> insertPath(Iterable<? extends T> path) {
+        Tree<T> current = this;
+        for (T element : path) {
+            current = current.child(element);
+        }
+        return current;
+    }
+
+    private static final class Visit<T> {
+        private final Tree<T> tree;
+        private final Visitor<T> parent;
+
+        Visit(Tree<T> tree, Visitor<T> parent) {
+            this.tree = tree;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Generates like the generate goal, then regenerates whenever a specification or a file it references changes,
+ * until the build is stopped. Parsed specifications stay in memory between runs, and with incremental generation
+ * only the models affected by a change are emitted again.
+ */
+@Mojo(name = "watch", threadSafe = true)
+public class WatchMojo extends GenerateMojo
+{
+    /**
+     * Milliseconds without further changes to wait for after a change before regenerating.
+     */
+    @Parameter(name = "debounce",
+        property = "swagger.codegen.maven.plugin.debounce",
+        defaultValue = "200")
+    private long debounce;
+
+    @Override
+    public void execute() throws MojoExecutionException
+    {
+        GenerationFingerprint fingerprint = generate();
+
+        try (SpecificationWatcher watcher = new SpecificationWatcher(debounce)) {
+            while (true) {
+                watcher.watch(fingerprint.files());
+                getLog().info( "Watching " + fingerprint.files().size() + " files for changes" );
+
+                Set<File> changed = watcher.await();
+                changed.forEach(file -> getLog().info( "Changed " + file ));
+
+                long start = System.nanoTime();
+                try {
+                    fingerprint = generate();
+                    getLog().info( "Regenerated in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms" );
+                } catch (MojoExecutionException | RuntimeException e) {
+                    // most likely a specification in the middle of being edited, the next change may fix it
+                    getLog().error( "Unable to regenerate", e );
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch " + fingerprint.files(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClientWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testClientAgainstStubServer() throws Exception {
+        ClassLoader generated = generateAndCompile();
+
+        List<String> requests = new ArrayList<>();
+        Set<Integer> ports = new HashSet<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/accounts/search", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            ports.add(exchange.getRemoteAddress().getPort());
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream output = new GZIPOutputStream(exchange.getResponseBody())) {
+                output.write("[{\"firstName\":\"Ada\",\"lastName\":\"Lovelace\"}]".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/accounts/", exchange -> {
+            try (InputStream input = new GZIPInputStream(exchange.getRequestBody())) {
+                requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath() + " " + read(input));
+            }
+            exchange.sendResponseHeaders(exchange.getRequestURI().getRawPath().endsWith("missing") ? 404 : 204, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            Class<?> apiClientClass = generated.loadClass("no.trinnvis.dabih.api.client.ApiClient");
+            Object apiClient = apiClientClass.getConstructor(String.class, ObjectMapper.class, int.class, boolean.class)
+                .newInstance("http://localhost:" + server.getAddress().getPort() + "/", new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL), 2, true);
+            Class<?> accountsClass = generated.loadClass("no.trinnvis.dabih.api.client.AccountsClient");
+            Object accounts = accountsClass.getConstructor(apiClientClass).newInstance(apiClient);
+
+            for (int i = 0; i < 2; i++) {
+                Collection<?> found = (Collection<?>) accountsClass.getMethod("getSearch", String.class).invoke(accounts, "a b");
+                assertThat(found.size(), is(1));
+                Object account = found.iterator().next();
+                assertThat(account.getClass().getMethod("getFirstName").invoke(account), is("Ada"));
+            }
+
+            Class<?> messageClass = generated.loadClass("no.trinnvis.dabih.api.AccountUpdateMessage");
+            Object builder = messageClass.getMethod("builder").invoke(null);
+            builder.getClass().getMethod("email", String.class).invoke(builder, "ada@example.com");
+            Object message = builder.getClass().getMethod("build").invoke(builder);
+            accountsClass.getMethod("putByAccountEmailOrId", String.class, messageClass).invoke(accounts, "ada/x", message);
+
+            try {
+                accountsClass.getMethod("putByAccountEmailOrId", String.class, messageClass).invoke(accounts, "missing", message);
+                fail("expected an error status");
+            } catch (InvocationTargetException e) {
+                assertThat(e.getCause().getClass().getSimpleName(), is("ApiException"));
+                assertThat(e.getCause().getClass().getMethod("status").invoke(e.getCause()), is(404));
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        assertThat(requests.get(0), is("GET /accounts/search?q=a%20b gzip"));
+        assertThat(requests.get(2), is("PUT /accounts/ada%2Fx {\"email\":\"ada@example.com\"}"));
+        // both searches were read to the end, so the second one reused the connection of the first
+        assertThat(ports.size(), is(1));
+    }
+
+    private ClassLoader generateAndCompile() throws IOException {
+        Path output = folder.getRoot().toPath();
+        OpenApiGenerator generator = new OpenApiGenerator(output.toFile(), new File("test/openapi.yaml"));
+        generator.clients(true);
+        generator.execute();
+
+        return GeneratedSources.compile(output);
+    }
+
+    private static String read(final InputStream input) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            result.write(buffer, 0, read);
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CodecRoundTripTest {
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static Class<?> order;
+    private static ObjectMapper databind;
+    private static ObjectMapper codecs;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        ClassLoader generated = GeneratedSources.compile(GeneratedSources.generate(FOLDER.getRoot(), "models.yaml", generator -> generator.codecs(true)));
+        order = generated.loadClass("no.trinnvis.dabih.api.Order");
+        databind = new ObjectMapper();
+        codecs = new ObjectMapper().registerModule((Module) generated.loadClass("no.trinnvis.dabih.api.json." + CodecWriter.MODULE_NAME).newInstance());
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testGeneratedCodecsAreUsed() throws Exception {
+        assertThat(codecs.getSerializerProviderInstance().findValueSerializer(order).getClass().getSimpleName(), is("OrderSerializer"));
+    }
+
+    @Test
+    public void testCompleteModel() throws Exception {
+        assertRoundTrip("{\"id\":\"a\",\"count\":3,\"paid\":true,\"status\":\"CLOSED\",\"tags\":[\"x\",\"y\"],"
+            + "\"matrix\":[[1,2],[],[3]],\"line\":{\"name\":\"n\",\"amount\":1},"
+            + "\"lines\":[{\"name\":\"m\",\"amount\":2},{\"name\":null,\"amount\":null}]}");
+    }
+
+    @Test
+    public void testNullsAndAbsentProperties() throws Exception {
+        assertRoundTrip("{\"id\":null,\"count\":null,\"status\":null,\"line\":null,\"tags\":null}");
+        assertRoundTrip("{}");
+    }
+
+    @Test
+    public void testAdditionalProperties() throws Exception {
+        assertRoundTrip("{\"id\":\"a\",\"extra\":\"value\",\"other\":\"more\"}");
+    }
+
+    /**
+     * The codecs read and write the model as Jackson databind does, and read back what they wrote.
+     */
+    private static void assertRoundTrip(final String json) throws Exception {
+        Object expected = databind.readValue(json, order);
+        Object read = codecs.readValue(json, order);
+        assertThat(read, is(expected));
+
+        String written = codecs.writeValueAsString(read);
+        assertThat(codecs.readTree(written), is(databind.readTree(databind.writeValueAsString(expected))));
+        assertThat(codecs.readValue(written, order), is(expected));
+        assertThat(databind.readValue(written, order), is(expected));
+    }
+}
@@ -0,0 +1,109 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactCollectionsTest {
+
+    private static final String[] DOCUMENTS = {
+        "{}",
+        "{\"pages\":[],\"labels\":[],\"access\":[]}",
+        "{\"pages\":[\"one\"],\"labels\":[\"a\"],\"access\":[\"WRITE\"]}",
+        "{\"pages\":[\"one\",\"two\",\"three\"],\"labels\":[\"a\",\"b\"],\"access\":[\"WRITE\",\"READ\"]}",
+    };
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static Class<?> compact;
+    private static Class<?> eager;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        compact = generate(CollectionStrategy.COMPACT);
+        eager = generate(CollectionStrategy.DEFAULT);
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testCollectionsAreUnmodifiable() throws Exception {
+        Object document = MAPPER.readValue(DOCUMENTS[3], compact);
+
+        for (String getter : new String[] {"getPages", "getLabels", "getAccess"}) {
+            Collection<?> collection = (Collection<?>) compact.getMethod(getter).invoke(document);
+            try {
+                collection.clear();
+                fail("Expected " + getter + " to be unmodifiable");
+            } catch (UnsupportedOperationException e) {
+                assertThat(collection.isEmpty(), is(false));
+            }
+        }
+    }
+
+    @Test
+    public void testCollectionsAreRightSized() throws Exception {
+        // empty and single element collections are the shared compact ones of Collections
+        Object empty = MAPPER.readValue(DOCUMENTS[1], compact);
+        assertThat(compact.getMethod("getPages").invoke(empty), is(sameInstance((Object) Collections.emptyList())));
+        assertThat(compact.getMethod("getLabels").invoke(empty), is(sameInstance((Object) Collections.emptySet())));
+        assertThat(compact.getMethod("getAccess").invoke(empty), is(sameInstance((Object) Collections.emptySet())));
+
+        Object single = MAPPER.readValue(DOCUMENTS[2], compact);
+        assertThat(compact.getMethod("getPages").invoke(single).getClass(), is((Object) Collections.singletonList("one").getClass()));
+        assertThat(compact.getMethod("getLabels").invoke(single).getClass(), is((Object) Collections.singleton("a").getClass()));
+
+        // larger lists are backed by an array of their size
+        Object several = MAPPER.readValue(DOCUMENTS[3], compact);
+        List<?> pages = (List<?>) compact.getMethod("getPages").invoke(several);
+        assertThat(pages.getClass(), is((Object) Collections.unmodifiableList(Arrays.asList("one", "two")).getClass()));
+        assertThat(pages.toArray().length, is(3));
+        assertThat(pages, is((Object) Arrays.asList("one", "two", "three")));
+    }
+
+    @Test
+    public void testCompactModelsEqualDefaultModels() throws Exception {
+        for (String json : DOCUMENTS) {
+            Object document = MAPPER.readValue(json, compact);
+            Object other = MAPPER.readValue(json, eager);
+
+            assertThat(json, compact.getMethod("getPages").invoke(document), is(eager.getMethod("getPages").invoke(other)));
+            assertThat(json, compact.getMethod("getLabels").invoke(document), is(eager.getMethod("getLabels").invoke(other)));
+            // the enums of the two generations are different classes
+            assertThat(json, String.valueOf(compact.getMethod("getAccess").invoke(document)), is(String.valueOf(eager.getMethod("getAccess").invoke(other))));
+            assertThat(json, MAPPER.readTree(MAPPER.writeValueAsString(document)), is(MAPPER.readTree(MAPPER.writeValueAsString(other))));
+        }
+    }
+
+    @Test
+    public void testBuiltWithoutCollections() throws Exception {
+        Object builder = compact.getMethod("builder").invoke(null);
+        Object document = builder.getClass().getMethod("build").invoke(builder);
+
+        assertThat(((List<?>) compact.getMethod("getPages").invoke(document)).isEmpty(), is(true));
+        assertThat(((Set<?>) compact.getMethod("getLabels").invoke(document)).isEmpty(), is(true));
+        assertThat(MAPPER.writeValueAsString(document), is("{\"pages\":[],\"labels\":[],\"access\":[]}"));
+    }
+
+    private static Class<?> generate(final CollectionStrategy collections) throws Exception {
+        Path output = GeneratedSources.generate(FOLDER.newFolder(collections.name()), "models.yaml", generator -> generator.collections(collections));
+        return GeneratedSources.compile(output).loadClass("no.trinnvis.dabih.api.Document");
+    }
+}
@@ -0,0 +1,81 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EnumParsingTest {
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static Class<?> order;
+    private static Class<?> status;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        ClassLoader generated = GeneratedSources.compile(GeneratedSources.generate(FOLDER.getRoot(), "models.yaml", generator -> { }));
+        order = generated.loadClass("no.trinnvis.dabih.api.Order");
+        status = generated.loadClass("no.trinnvis.dabih.api.StatusEnum");
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testKnownValues() throws Exception {
+        assertThat(String.valueOf(of("OPEN")), is("OPEN"));
+        assertThat(String.valueOf(ofNullable("CLOSED")), is("CLOSED"));
+        assertThat(of("CLOSED"), is(ofNullable("CLOSED")));
+    }
+
+    @Test
+    public void testUnknownAndCaseVariantValues() throws Exception {
+        for (String value : new String[] {"open", "Open", "OPEN ", "PENDING"}) {
+            assertThat(value, ofNullable(value), is(nullValue()));
+            assertThat(value, status.getMethod("ofOrDefault", String.class, status).invoke(null, value, of("CLOSED")), is(of("CLOSED")));
+            try {
+                of(value);
+                fail("Expected " + value + " to be rejected");
+            } catch (InvocationTargetException e) {
+                assertThat(e.getCause().getMessage(), is("No enum constant StatusEnum." + value));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingValues() throws Exception {
+        assertThat(of(null), is(nullValue()));
+        assertThat(of(""), is(nullValue()));
+        assertThat(ofNullable(null), is(nullValue()));
+        assertThat(ofNullable(""), is(nullValue()));
+    }
+
+    @Test
+    public void testJacksonReadsUnknownValuesAsNull() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Method getStatus = order.getMethod("getStatus");
+
+        assertThat(getStatus.invoke(mapper.readValue("{\"status\":\"CLOSED\"}", order)), is(of("CLOSED")));
+        assertThat(getStatus.invoke(mapper.readValue("{\"status\":\"closed\"}", order)), is(nullValue()));
+        assertThat(getStatus.invoke(mapper.readValue("{\"status\":\"PENDING\"}", order)), is(nullValue()));
+    }
+
+    private static Object of(final String value) throws ReflectiveOperationException {
+        return status.getMethod("of", String.class).invoke(null, value);
+    }
+
+    private static Object ofNullable(final String value) throws ReflectiveOperationException {
+        return status.getMethod("ofNullable", String.class).invoke(null, value);
+    }
+}
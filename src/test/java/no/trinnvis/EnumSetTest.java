@@ -0,0 +1,100 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EnumSetTest {
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static Class<?> account;
+    private static Class<?> roles;
+    private static ObjectMapper databind;
+    private static ObjectMapper codecs;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        ClassLoader generated = GeneratedSources.compile(GeneratedSources.generate(FOLDER.getRoot(), "models.yaml", generator -> generator.codecs(true)));
+        account = generated.loadClass("no.trinnvis.dabih.api.Account");
+        roles = generated.loadClass("no.trinnvis.dabih.api.RolesEnum");
+        databind = new ObjectMapper();
+        codecs = new ObjectMapper().registerModule((Module) generated.loadClass("no.trinnvis.dabih.api.json." + CodecWriter.MODULE_NAME).newInstance());
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testReadSetsAreEnumSets() throws Exception {
+        for (ObjectMapper mapper : new ObjectMapper[] {databind, codecs}) {
+            Set<?> read = roles(mapper.readValue("{\"roles\":[\"USER\",\"ADMIN\",\"USER\"]}", account));
+
+            // an EnumSet iterates in declaration order
+            assertThat(names(read), is(Arrays.asList("ADMIN", "USER")));
+            try {
+                read.clear();
+                fail("Expected the set to be unmodifiable");
+            } catch (UnsupportedOperationException e) {
+                assertThat(read.size(), is(2));
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownValuesAreLeftOut() throws Exception {
+        for (ObjectMapper mapper : new ObjectMapper[] {databind, codecs}) {
+            assertThat(names(roles(mapper.readValue("{\"roles\":[\"OWNER\",\"GUEST\",\"owner\"]}", account))), is(Arrays.asList("OWNER")));
+        }
+    }
+
+    @Test
+    public void testAbsentAndNullSets() throws Exception {
+        for (ObjectMapper mapper : new ObjectMapper[] {databind, codecs}) {
+            assertThat(roles(mapper.readValue("{}", account)).isEmpty(), is(true));
+            assertThat(roles(mapper.readValue("{\"roles\":[]}", account)).isEmpty(), is(true));
+            assertThat(roles(mapper.readValue("{\"roles\":null}", account)), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testBuilderCopiesIntoAnEnumSet() throws Exception {
+        Set<Object> given = new HashSet<>(Arrays.asList(roles.getMethod("of", String.class).invoke(null, "USER"), null,
+            roles.getMethod("of", String.class).invoke(null, "OWNER")));
+
+        Object builder = account.getMethod("builder").invoke(null);
+        Method setRoles = builder.getClass().getMethod("roles", Set.class);
+        setRoles.invoke(builder, given);
+        given.clear();
+        Object built = builder.getClass().getMethod("build").invoke(builder);
+
+        assertThat(names(roles(built)), is(Arrays.asList("OWNER", "USER")));
+    }
+
+    private static Set<?> roles(final Object account) throws ReflectiveOperationException {
+        return (Set<?>) EnumSetTest.account.getMethod("getRoles").invoke(account);
+    }
+
+    private static List<String> names(final Collection<?> values) {
+        List<String> names = new ArrayList<>();
+        values.forEach(value -> names.add(value.toString()));
+        return names;
+    }
+}
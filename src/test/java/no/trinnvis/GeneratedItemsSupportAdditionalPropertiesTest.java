@@ -5,6 +5,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -49,5 +50,14 @@ public class GeneratedItemsSupportAdditionalPropertiesTest {
         assertThat(json, is("{\"name\":null,\"content\":null,\"employee\":null,\"pages\":[],\"accessControl\":[],\"test1\":\"test 1 value\"}"));
     }
 
+    @Test
+    public void testNoAdditionalPropertiesIsEmpty() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+
+        ItemWithAdditionalProperties item = mapper.readValue("{\"name\":\"a\"}", ItemWithAdditionalProperties.class);
+        assertThat(item.getAdditionalProperties(), is(Collections.emptyMap()));
+        assertThat(mapper.writeValueAsString(item), is("{\"name\":\"a\",\"content\":null,\"employee\":null,\"pages\":[],\"accessControl\":[]}"));
+    }
+
 
 }
@@ -0,0 +1,88 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.ToolProvider;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Writes specifications for tests and compiles the sources generated from them.
+ */
+final class GeneratedSources {
+
+    private GeneratedSources() {
+    }
+
+    /**
+     * Writes the lines of a specification to openapi.yaml in the folder.
+     */
+    static File specification(final Path folder, final String... lines) throws IOException {
+        return Files.write(folder.resolve("openapi.yaml"), String.join("\n", lines).concat("\n").getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+
+    /**
+     * Copies a specification of the test resources, in src/test/resources/specifications, to openapi.yaml in the folder.
+     */
+    static File fixture(final File folder, final String name) throws IOException {
+        Path specification = folder.toPath().resolve("openapi.yaml");
+        try (InputStream input = GeneratedSources.class.getResourceAsStream("/specifications/" + name)) {
+            Files.copy(input, specification, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return specification.toFile();
+    }
+
+    /**
+     * Generates the sources of a specification of the test resources, configured as given, below the folder.
+     *
+     * @return the output folder
+     */
+    static Path generate(final File folder, final String name, final Consumer<OpenApiGenerator> configuration) throws IOException {
+        Path output = folder.toPath().resolve("output");
+        OpenApiGenerator generator = new OpenApiGenerator(output.toFile(), fixture(folder, name));
+        configuration.accept(generator);
+        generator.execute();
+        return output;
+    }
+
+    /**
+     * Compiles the sources generated in the output folder.
+     *
+     * @return a class loader for the compiled sources
+     */
+    static ClassLoader compile(final Path output) throws IOException {
+        List<String> arguments = new ArrayList<>();
+        Path classes = Files.createDirectories(output.resolve("classes"));
+        arguments.add("-nowarn");
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        try (Stream<Path> sources = Files.walk(output.resolve("src/main/java"))) {
+            arguments.addAll(sources.map(Path::toString).filter(p -> p.endsWith(".java")).collect(Collectors.toList()));
+        }
+        try {
+            Class.forName("javax.annotation.Generated");
+        } catch (ClassNotFoundException e) {
+            // not part of the JDK since Java 11
+            Path generated = Files.createDirectories(output.resolve("annotation/javax/annotation")).resolve("Generated.java");
+            Files.write(generated, "package javax.annotation; public @interface Generated { String[] value(); }".getBytes(StandardCharsets.UTF_8));
+            arguments.add(generated.toString());
+        }
+
+        assertThat(ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])), is(0));
+        return new URLClassLoader(new URL[] {classes.toUri().toURL()}, GeneratedSources.class.getClassLoader());
+    }
+}
@@ -0,0 +1,74 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GenerationFingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoredFingerprintMatches() throws IOException {
+        File spec = write("openapi.yaml", "openapi: 3.0.0\n");
+        File stored = new File(folder.getRoot(), "out/" + GenerateMojo.FINGERPRINT_FILE);
+
+        GenerationFingerprint fingerprint = GenerationFingerprint.of(spec, "1", Collections.emptyMap());
+        assertThat(fingerprint.matches(stored), is(false));
+
+        fingerprint.store(stored);
+        assertThat(GenerationFingerprint.of(spec, "1", Collections.emptyMap()).matches(stored), is(true));
+        assertThat(GenerationFingerprint.of(spec, "2", Collections.emptyMap()).matches(stored), is(false));
+        assertThat(GenerationFingerprint.of(spec, "1", Collections.singletonMap("output", "other")).matches(stored), is(false));
+    }
+
+    @Test
+    public void testReferencedFilesAreIncluded() throws IOException {
+        File spec = write("openapi.yaml", "schema:\n  $ref: 'schemas/item.yaml#/Item'\nother:\n  $ref: '#/components/schemas/Local'\n");
+        File item = write("schemas/item.yaml", "Item:\n  type: object\n");
+
+        GenerationFingerprint before = GenerationFingerprint.of(spec, "1", Collections.emptyMap());
+        assertThat(before.files().contains(item.getCanonicalFile()), is(true));
+        assertThat(before.files().size(), is(2));
+
+        write("schemas/item.yaml", "Item:\n  type: string\n");
+        assertThat(GenerationFingerprint.of(spec, "1", Collections.emptyMap()).toString(), not(before.toString()));
+    }
+
+    @Test
+    public void testFieldBoundariesAreDigested() throws IOException {
+        File spec = write("openapi.yaml", "openapi: 3.0.0\n");
+
+        assertThat(GenerationFingerprint.of(spec, "1", Collections.singletonMap("ab", "c")).toString(),
+            not(GenerationFingerprint.of(spec, "1", Collections.singletonMap("a", "bc")).toString()));
+        assertThat(GenerationFingerprint.of(spec, "1", Collections.singletonMap("a", "b")).configuration(),
+            not(GenerationFingerprint.of(spec, "1a", Collections.singletonMap("", "b")).configuration()));
+    }
+
+    @Test
+    public void testFingerprintDoesNotDependOnTheCheckoutLocation() throws IOException {
+        File first = write("a/openapi.yaml", "schema:\n  $ref: 'schemas/item.yaml#/Item'\n");
+        write("a/schemas/item.yaml", "Item:\n  type: object\n");
+        File second = write("b/openapi.yaml", "schema:\n  $ref: 'schemas/item.yaml#/Item'\n");
+        write("b/schemas/item.yaml", "Item:\n  type: object\n");
+
+        assertThat(GenerationFingerprint.of(second, "1", Collections.emptyMap()).toString(),
+            is(GenerationFingerprint.of(first, "1", Collections.emptyMap()).toString()));
+    }
+
+    private File write(final String name, final String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
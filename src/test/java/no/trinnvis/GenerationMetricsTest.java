@@ -0,0 +1,103 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GenerationMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCountersAndSummary() {
+        GenerationMetrics metrics = counted();
+
+        assertThat(metrics.millis(GenerationMetrics.Phase.PARSE), is(5L));
+        assertThat(metrics.filesWritten(), is(2));
+        assertThat(metrics.filesSkipped(), is(1));
+        assertThat(metrics.summary().contains("3 schemas, 2 models, 1 enums and 1 resources generated"), is(true));
+        assertThat(metrics.summary().contains("2 files written (15 bytes), 1 files unchanged"), is(true));
+    }
+
+    @Test
+    public void testCountersFromSeveralThreads() throws InterruptedException {
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    metrics.fileWritten(1);
+                    metrics.elapsed(GenerationMetrics.Phase.MODELS, TimeUnit.MICROSECONDS.toNanos(1));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(metrics.filesWritten(), is(4000));
+        assertThat(metrics.millis(GenerationMetrics.Phase.MODELS), is(4L));
+    }
+
+    @Test
+    public void testJsonReport() throws IOException {
+        File report = new File(folder.getRoot(), "target/metrics/report.json");
+        counted().writeJson(report);
+
+        JsonNode root = new ObjectMapper().readTree(report);
+        assertThat(root.path("phasesMillis").path("parse").asLong(), is(5L));
+        assertThat(root.path("phasesMillis").path("resources").asLong(), is(0L));
+        assertThat(root.path("schemas").asInt(), is(3));
+        assertThat(root.path("models").asInt(), is(2));
+        assertThat(root.path("enums").asInt(), is(1));
+        assertThat(root.path("resources").asInt(), is(1));
+        assertThat(root.path("filesWritten").asInt(), is(2));
+        assertThat(root.path("filesSkipped").asInt(), is(1));
+        assertThat(root.path("bytesWritten").asLong(), is(15L));
+    }
+
+    @Test
+    public void testGeneratorCountsWhatItWrites() throws IOException {
+        Path output = folder.getRoot().toPath().resolve("output");
+        File input = new File("test/openapi.yaml");
+
+        OpenApiGenerator first = new OpenApiGenerator(output.toFile(), input);
+        first.execute();
+        int schemas = first.openAPI().getComponents().getSchemas().size();
+        assertThat(first.metrics().summary().get(GenerationMetrics.Phase.values().length).startsWith(schemas + " schemas, " + schemas + " models"), is(true));
+        assertThat(first.metrics().filesSkipped(), is(0));
+
+        OpenApiGenerator second = new OpenApiGenerator(output.toFile(), input);
+        second.execute();
+        assertThat(second.metrics().filesWritten(), is(0));
+        assertThat(second.metrics().filesSkipped(), is(first.metrics().filesWritten()));
+    }
+
+    private static GenerationMetrics counted() {
+        GenerationMetrics metrics = new GenerationMetrics();
+        metrics.elapsed(GenerationMetrics.Phase.PARSE, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.schemas(3);
+        metrics.model();
+        metrics.model();
+        metrics.enumeration();
+        metrics.resource();
+        metrics.fileWritten(10);
+        metrics.fileWritten(5);
+        metrics.fileSkipped();
+        return metrics;
+    }
+}
@@ -0,0 +1,59 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GenerationSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSharedSchemasAreGeneratedOnce() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path specifications = Files.createDirectories(root.resolve("openapi"));
+        String specification = new String(Files.readAllBytes(new File("test/openapi.yaml").toPath()), StandardCharsets.UTF_8);
+        Files.write(specifications.resolve("billing.yaml"), specification.getBytes(StandardCharsets.UTF_8));
+        Files.write(specifications.resolve("user-service.yaml"), specification
+            .replace("Extends the organization create message", "Creates an account").getBytes(StandardCharsets.UTF_8));
+
+        Spec spec = new Spec();
+        spec.setInput("openapi/*.yaml");
+        spec.setPackageName("com.example.{name}.api");
+        List<File> files = spec.files(root.toFile());
+        assertThat(files, is(Arrays.asList(specifications.resolve("billing.yaml").toFile(), specifications.resolve("user-service.yaml").toFile())));
+
+        File output = root.resolve("output").toFile();
+        Path stale = Files.createDirectories(root.resolve("output/src/main/java/com/example/old")).resolve("Stale.java");
+        Files.write(stale, ("@Generated(\"" + SourceWriter.GENERATED + "\") class Stale {}").getBytes(StandardCharsets.UTF_8));
+        Path handWritten = stale.resolveSibling("HandWritten.java");
+        Files.write(handWritten, "class HandWritten {}".getBytes(StandardCharsets.UTF_8));
+
+        GenerationSession session = new GenerationSession(output, "com.example.shared", 2);
+        files.forEach(file -> session.add(file, spec.packageOf(file)));
+        session.execute(generator -> { });
+
+        Path sources = root.resolve("output/src/main/java/com/example");
+        assertThat(Files.isRegularFile(sources.resolve("shared/AccountViewModel.java")), is(true));
+        assertThat(Files.exists(sources.resolve("billing/api/AccountViewModel.java")), is(false));
+        assertThat(Files.exists(sources.resolve("userservice/api/AccountViewModel.java")), is(false));
+        assertThat(Files.exists(sources.resolve("shared/AccountCreateMessage.java")), is(false));
+        assertThat(Files.isRegularFile(sources.resolve("billing/api/AccountCreateMessage.java")), is(true));
+        assertThat(Files.isRegularFile(sources.resolve("userservice/api/AccountCreateMessage.java")), is(true));
+        assertThat(Files.isRegularFile(sources.resolve("billing/api/resources/AccountsApi.java")), is(true));
+        assertThat(Files.isRegularFile(sources.resolve("userservice/api/resources/AccountsApi.java")), is(true));
+        assertThat(Files.exists(sources.resolve("shared/resources")), is(false));
+        assertThat(Files.exists(stale), is(false));
+        assertThat(Files.exists(handWritten), is(true));
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -39,7 +40,7 @@ public final class ItemWithAdditionalProperties {
         employee = builder.employee;
         pages = builder.pages;
         accessControl = builder.accessControl;
-        additionalProperties = builder.additionalProperties; // TODO make immutable
+        additionalProperties = builder.additionalProperties == null ? Collections.emptyMap() : builder.additionalProperties;
     }
 
     public String getName() {
@@ -98,7 +99,7 @@ public final class ItemWithAdditionalProperties {
             return this;
         }
 
-        private Map<String, Object> additionalProperties = new HashMap<>();
+        private Map<String, Object> additionalProperties;
 
         ItemWithAdditionaPropertiesBuilder() {
         }
@@ -165,6 +166,9 @@ public final class ItemWithAdditionalProperties {
                 .getExpectedClass().cast(value));
             */
 
+            if (additionalProperties == null) {
+                additionalProperties = new HashMap<>();
+            }
             additionalProperties.put(key, value);
             return this;
         }
@@ -0,0 +1,94 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LazyTemporalsTest {
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static Class<?> event;
+    private static ObjectMapper databind;
+    private static ObjectMapper codecs;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        Path output = GeneratedSources.generate(FOLDER.getRoot(), "models.yaml", generator -> {
+            generator.lazyTemporals(true);
+            generator.codecs(true);
+        });
+
+        ClassLoader generated = GeneratedSources.compile(output);
+        event = generated.loadClass("no.trinnvis.dabih.api.Event");
+        databind = new ObjectMapper();
+        codecs = new ObjectMapper().registerModule((Module) generated.loadClass("no.trinnvis.dabih.api.json." + CodecWriter.MODULE_NAME).newInstance());
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testValueIsParsedOnFirstAccess() throws Exception {
+        for (ObjectMapper mapper : new ObjectMapper[] {databind, codecs}) {
+            // reading does not parse, so an invalid value only fails when it is accessed
+            Object read = mapper.readValue("{\"day\":\"not a date\"}", event);
+            try {
+                event.getMethod("getDay").invoke(read);
+                fail("Expected the day to be parsed");
+            } catch (InvocationTargetException e) {
+                assertThat(e.getCause() instanceof DateTimeParseException, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testValueIsParsedOnce() throws Exception {
+        assertThat(Modifier.isVolatile(event.getDeclaredField("day").getModifiers()), is(true));
+
+        Object read = databind.readValue("{\"day\":\"2020-01-02\"}", event);
+        Method getDay = event.getMethod("getDay");
+        Object day = getDay.invoke(read);
+
+        assertThat(day, is((Object) LocalDate.of(2020, 1, 2)));
+        assertThat(getDay.invoke(read), is(sameInstance(day)));
+    }
+
+    @Test
+    public void testValueIsWrittenAsItWasRead() throws Exception {
+        // not the ISO form ZonedDateTime would format it as
+        String json = "{\"day\":\"2020-01-02\",\"at\":\"2020-01-02T03:04:05.000+01:00\"}";
+
+        for (ObjectMapper mapper : new ObjectMapper[] {databind, codecs}) {
+            Object read = mapper.readValue(json, event);
+            assertThat(event.getMethod("getAt").invoke(read), is((Object) ZonedDateTime.parse("2020-01-02T03:04:05+01:00")));
+            assertThat(mapper.readTree(mapper.writeValueAsString(read)), is(mapper.readTree(json)));
+        }
+    }
+
+    @Test
+    public void testValueSetThroughTheBuilderIsFormatted() throws Exception {
+        Object builder = event.getMethod("builder").invoke(null);
+        builder.getClass().getMethod("day", LocalDate.class).invoke(builder, LocalDate.of(2020, 1, 2));
+        Object built = builder.getClass().getMethod("build").invoke(builder);
+
+        assertThat(databind.writeValueAsString(built), is("{\"day\":\"2020-01-02\",\"at\":null}"));
+    }
+}
@@ -1,11 +1,23 @@
 package no.trinnvis;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class OpenApiGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
-    public void testGenerator() {
+    public void testGenerator() throws IOException {
         final File output = new File("test/output");
         final File input = new File("test/openapi.yaml");
 
@@ -15,4 +27,31 @@ public class OpenApiGeneratorTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFailedWritesAreReportedAndLeaveNoState() throws IOException {
+        Path output = folder.getRoot().toPath();
+        // a file where the package folders should be created
+        Files.createDirectories(output.resolve("src/main/java"));
+        Files.createFile(output.resolve("src/main/java/no"));
+
+        OpenApiGenerator generator = new OpenApiGenerator(output.toFile(), new File("test/openapi.yaml"));
+        generator.incremental("configuration");
+        try {
+            generator.execute();
+            fail("Expected the sources to fail");
+        } catch (IOException e) {
+            assertThat(e.getCause() instanceof IOException, is(true));
+        }
+
+        assertThat(Files.exists(output.resolve(OpenApiGenerator.STATE_FILE)), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnparsableSpecificationFails() throws IOException {
+        Path output = folder.getRoot().toPath();
+        Path input = Files.write(output.resolve("openapi.yaml"), "openapi: [".getBytes("UTF-8"));
+
+        new OpenApiGenerator(output.toFile(), input.toFile()).execute();
+    }
+
+}
@@ -0,0 +1,75 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrimitiveNumbersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDefaultTypesDoNotDependOnTheFormat() throws Exception {
+        Path output = generate(false);
+        String measure = new String(Files.readAllBytes(output.resolve("src/main/java/no/trinnvis/dabih/api/Measure.java")), StandardCharsets.UTF_8);
+
+        assertThat(measure.contains("private final Integer count;"), is(true));
+        assertThat(measure.contains("private final Integer total;"), is(true));
+        assertThat(measure.contains("private final Object ratio;"), is(true));
+        assertThat(measure.contains("private final Object weight;"), is(true));
+        assertThat(measure.contains("private final String code;"), is(true));
+    }
+
+    @Test
+    public void testRequiredNumbersArePrimitives() throws Exception {
+        Class<?> measure = GeneratedSources.compile(generate(true)).loadClass("no.trinnvis.dabih.api.Measure");
+
+        assertThat(measure.getDeclaredField("count").getType(), is((Object) int.class));
+        assertThat(measure.getDeclaredField("total").getType(), is((Object) long.class));
+        assertThat(measure.getDeclaredField("ratio").getType(), is((Object) double.class));
+        assertThat(measure.getDeclaredField("weight").getType(), is((Object) Double.class));
+        assertThat(measure.getDeclaredField("code").getType(), is((Object) String.class));
+
+        ObjectMapper mapper = new ObjectMapper();
+        Object read = mapper.readValue("{\"count\":1,\"total\":10000000000,\"ratio\":0.5}", measure);
+        assertThat(measure.getMethod("getTotal").invoke(read), is((Object) 10000000000L));
+        assertThat(measure.getMethod("getWeight").invoke(read), is((Object) null));
+    }
+
+    @Test
+    public void testMissingRequiredNumberFails() throws Exception {
+        Class<?> measure = GeneratedSources.compile(generate(true)).loadClass("no.trinnvis.dabih.api.Measure");
+
+        Object builder = measure.getMethod("builder").invoke(null);
+        builder.getClass().getMethod("count", int.class).invoke(builder, 1);
+        builder.getClass().getMethod("total", long.class).invoke(builder, 2L);
+        try {
+            builder.getClass().getMethod("build").invoke(builder);
+            fail("Expected the missing ratio to fail");
+        } catch (InvocationTargetException e) {
+            assertThat(e.getCause() instanceof NullPointerException, is(true));
+            assertThat(e.getCause().getMessage(), is("ratio is required"));
+        }
+
+        try {
+            new ObjectMapper().readValue("{\"count\":1,\"ratio\":0.5}", measure);
+            fail("Expected the missing total to fail");
+        } catch (JsonMappingException e) {
+            assertThat(e.getMessage().contains("total is required"), is(true));
+        }
+    }
+
+    private Path generate(final boolean primitiveNumbers) throws Exception {
+        return GeneratedSources.generate(folder.getRoot(), "models.yaml", generator -> generator.primitiveNumbers(primitiveNumbers));
+    }
+}
@@ -0,0 +1,118 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReproducibleOutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCollidingEnumsAreNamedByModelName() throws IOException {
+        File input = GeneratedSources.fixture(folder.getRoot(), "colliding-enums.yaml");
+
+        Map<String, String> sources = generate(folder.newFolder("first").toPath(), input, 4);
+        assertThat(generate(folder.newFolder("second").toPath(), input, 1), is(sources));
+
+        // Order comes first by name although Shipment is declared first
+        assertThat(sources.get("no/trinnvis/dabih/api/StatusEnum.java").contains("OPEN"), is(true));
+        assertThat(sources.get("no/trinnvis/dabih/api/ShipmentStatusEnum.java").contains("SHIPPED"), is(true));
+        assertThat(sources.get("no/trinnvis/dabih/api/Payment.java").contains("StatusEnum status;"), is(true));
+    }
+
+    @Test
+    public void testIncrementalRunRenamesEnumsOfUnchangedModels() throws IOException {
+        Path input = GeneratedSources.fixture(folder.getRoot(), "colliding-enums.yaml").toPath();
+        String shared = read(input).replace("[PACKED, SHIPPED]", "[OPEN, CLOSED]");
+        Path output = folder.newFolder("output").toPath();
+
+        Files.write(input, shared.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> first = generate(output, input.toFile(), 1, "incremental");
+        assertThat(first.containsKey("no/trinnvis/dabih/api/ShipmentStatusEnum.java"), is(false));
+
+        // Order sorts first and takes StatusEnum for its changed constants, the unchanged models must follow
+        Files.write(input, shared.replaceFirst("\\[OPEN, CLOSED\\]\n    Payment", "[NEW, DONE]\n    Payment").getBytes(StandardCharsets.UTF_8));
+        Map<String, String> second = generate(output, input.toFile(), 1, "incremental");
+
+        assertThat(second.get("no/trinnvis/dabih/api/StatusEnum.java").contains("NEW"), is(true));
+        assertThat(second.get("no/trinnvis/dabih/api/Payment.java").contains("PaymentStatusEnum status;"), is(true));
+        assertThat(second, is(generate(folder.newFolder("full").toPath(), input.toFile(), 1, null)));
+    }
+
+    @Test
+    public void testOutputDoesNotDependOnThreads() throws IOException {
+        File input = new File("test/openapi.yaml");
+
+        assertThat(generate(folder.newFolder("parallel").toPath(), input, 8), is(generate(folder.newFolder("serial").toPath(), input, 1)));
+    }
+
+    @Test
+    public void testEveryWriterDoesNotDependOnThreads() throws IOException {
+        File input = new File("test/openapi.yaml");
+
+        // one pool serves every phase of a run, a few runs give racing writers a chance to show
+        Map<String, String> serial = generateAll(folder.newFolder("serial").toPath(), input, 1);
+        for (int run = 0; run < 3; run++) {
+            assertThat(generateAll(folder.newFolder("parallel" + run).toPath(), input, 8), is(serial));
+        }
+    }
+
+    private static Map<String, String> generateAll(final Path output, final File input, final int threads) throws IOException {
+        OpenApiGenerator generator = new OpenApiGenerator(output.toFile(), input, threads);
+        generator.codecs(true);
+        generator.primitiveNumbers(true);
+        generator.lazyTemporals(true);
+        generator.collections(CollectionStrategy.COMPACT);
+        generator.resources(ResourceStyle.COMPLETION_STAGE, Collections.emptySet(), true);
+        generator.clients(true);
+        generator.execute();
+        return sources(output);
+    }
+
+    private static Map<String, String> generate(final Path output, final File input, final int threads) throws IOException {
+        return generate(output, input, threads, null);
+    }
+
+    private static Map<String, String> generate(final Path output, final File input, final int threads, final String incremental) throws IOException {
+        OpenApiGenerator generator = new OpenApiGenerator(output.toFile(), input, threads);
+        generator.codecs(true);
+        if (incremental != null) {
+            generator.incremental(incremental);
+        }
+        generator.execute();
+        return sources(output);
+    }
+
+    private static Map<String, String> sources(final Path output) throws IOException {
+        Path root = output.resolve("src/main/java");
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toMap(
+                file -> root.relativize(file).toString().replace(File.separatorChar, '/'),
+                ReproducibleOutputTest::read,
+                (a, b) -> a,
+                TreeMap::new));
+        }
+    }
+
+    private static String read(final Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
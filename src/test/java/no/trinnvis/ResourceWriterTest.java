@@ -0,0 +1,147 @@
+package no.trinnvis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.StreamingOutput;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGreedyTemplateIsJaxRsRegex() {
+        assertThat(ResourceWriter.jaxRsPath("/{path+}"), is("/{path: .+}"));
+        assertThat(ResourceWriter.jaxRsPath("/{organizationId}/computers"), is("/{organizationId}/computers"));
+    }
+
+    @Test
+    public void testNamesAreCamelCase() {
+        assertThat(ApiOperation.camel("update-template"), is("UpdateTemplate"));
+        assertThat(ApiOperation.camel("{path+}"), is("Path"));
+        assertThat(ApiOperation.javaName("Content-Length"), is("contentLength"));
+        assertThat(ApiOperation.javaName("default"), is("defaultValue"));
+    }
+
+    @Test
+    public void testAsyncResponseIsTheDefault() throws Exception {
+        ClassLoader generated = generate(null);
+
+        Method get = method(generated, "ItemsApi", "getById");
+        assertThat(get.getReturnType(), is((Object) void.class));
+        assertThat(get.getParameterTypes()[1].getName(), is(AsyncResponse.class.getName()));
+
+        assertThat(method(generated, "ReportsApi", "get").getReturnType(), is((Object) void.class));
+    }
+
+    @Test
+    public void testSynchronousOnRequest() throws Exception {
+        ClassLoader generated = generate(ResourceStyle.SYNCHRONOUS);
+
+        Method get = method(generated, "ItemsApi", "getById");
+        assertThat(get.getReturnType().getSimpleName(), is("Item"));
+        assertThat(Arrays.asList(get.getParameterTypes()), is(Collections.<Class<?>>singletonList(String.class)));
+    }
+
+    @Test
+    public void testCompletionStageExceptSynchronousTags() throws Exception {
+        ClassLoader generated = generate(ResourceStyle.COMPLETION_STAGE);
+
+        Method get = method(generated, "ItemsApi", "getById");
+        assertThat(get.getReturnType().getName(), is(CompletionStage.class.getName()));
+        assertThat(get.getGenericReturnType().getTypeName(), is(CompletionStage.class.getName() + "<no.trinnvis.dabih.api.Item>"));
+
+        assertThat(method(generated, "ReportsApi", "get").getReturnType().getSimpleName(), is("Item"));
+    }
+
+    @Test
+    public void testAsyncResponseExceptSynchronousTags() throws Exception {
+        ClassLoader generated = generate(ResourceStyle.ASYNC_RESPONSE);
+
+        Method get = method(generated, "ItemsApi", "getById");
+        assertThat(get.getReturnType(), is((Object) void.class));
+        assertThat(get.getParameterTypes().length, is(2));
+        assertThat(get.getParameterTypes()[1].getName(), is(AsyncResponse.class.getName()));
+
+        Method report = method(generated, "ReportsApi", "get");
+        assertThat(report.getReturnType().getSimpleName(), is("Item"));
+        assertThat(report.getParameterTypes().length, is(0));
+    }
+
+    @Test
+    public void testStreamedArrayResponse() throws Exception {
+        ClassLoader generated = generate(ResourceStyle.SYNCHRONOUS);
+        Class<?> item = generated.loadClass("no.trinnvis.dabih.api.Item");
+        Class<?> arrayOutput = generated.loadClass("no.trinnvis.dabih.api.resources." + ResourceWriter.ARRAY_OUTPUT);
+
+        assertThat(method(generated, "ItemsApi", "get").getGenericReturnType().getTypeName(), is(arrayOutput.getName() + "<" + item.getName() + ">"));
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<Object> items = new ArrayList<>();
+        for (String name : new String[] {"a", null, "c"}) {
+            Object builder = item.getMethod("builder").invoke(null);
+            builder.getClass().getMethod("name", String.class).invoke(builder, name);
+            items.add(builder.getClass().getMethod("build").invoke(builder));
+        }
+
+        AtomicBoolean closed = new AtomicBoolean();
+        Object fromIterator = arrayOutput.getMethod("of", ObjectMapper.class, Class.class, Iterator.class).invoke(null, mapper, item, items.iterator());
+        Object fromStream = arrayOutput.getMethod("of", ObjectMapper.class, Class.class, Stream.class).invoke(null, mapper, item, items.stream().onClose(() -> closed.set(true)));
+        Object empty = arrayOutput.getMethod("of", ObjectMapper.class, Class.class, Iterator.class).invoke(null, mapper, item, Collections.emptyIterator());
+
+        assertThat(write((StreamingOutput) fromIterator), is(mapper.writeValueAsString(items)));
+        assertThat(write((StreamingOutput) fromStream), is(mapper.writeValueAsString(items)));
+        assertThat(closed.get(), is(true));
+        assertThat(write((StreamingOutput) empty), is("[]"));
+    }
+
+    /**
+     * Writes the output to a stream that must be left open for the container.
+     */
+    private static String write(final StreamingOutput output) throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        output.write(bytes);
+        assertThat(closed.get(), is(false));
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private ClassLoader generate(final ResourceStyle style) throws Exception {
+        return GeneratedSources.compile(GeneratedSources.generate(folder.getRoot(), "resources.yaml", generator -> {
+            if (style != null) {
+                generator.resources(style, Collections.singletonList("reports"), false);
+            }
+        }));
+    }
+
+    private static Method method(final ClassLoader generated, final String resource, final String name) throws ReflectiveOperationException {
+        for (Method method : generated.loadClass("no.trinnvis.dabih.api.resources." + resource).getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new NoSuchMethodException(resource + "." + name);
+    }
+}
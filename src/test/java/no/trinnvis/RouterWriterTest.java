@@ -0,0 +1,83 @@
+package no.trinnvis;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RouterWriterTest {
+
+    private static final String ROUTER = "no.trinnvis.dabih.api.resources." + RouterWriter.ROUTER;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLiteralsArePreferredAndTemplatesBacktrack() throws Exception {
+        Method route = compile(GeneratedSources.generate(folder.getRoot(), "router.yaml", generator -> { }));
+
+        assertThat(route(route, "GET", "/items/search"), is("items.getSearch {}"));
+        assertThat(route(route, "GET", "/items/42"), is("items.getById {id=42}"));
+        // the literal search has no history below it, the template is tried next
+        assertThat(route(route, "GET", "/items/search/history"), is("items.getByIdHistory {id=search}"));
+
+        assertThat(route(route, "GET", "/files/readme"), is("files.getReadme {}"));
+        assertThat(route(route, "GET", "/files/readme/notes"), is("files.getByPath {path=readme/notes}"));
+        assertThat(route(route, "GET", "/files/a/b/c"), is("files.getByPath {path=a/b/c}"));
+
+        assertThat(route(route, "GET", "/orders/7"), is("orders.getById {id=7}"));
+        assertThat(route(route, "GET", "/orders/7/"), is("orders.getById {id=7}"));
+
+        assertThat(route(route, "PATCH", "/items/42"), is(nullValue()));
+        assertThat(route(route, "GET", "/items/42/unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void testPathsSharingAPrefixAreSplitOverMethods() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("openapi: 3.0.0");
+        lines.add("info:\n  title: Router\n  version: '1'");
+        lines.add("paths:");
+        for (int i = 0; i < 1200; i++) {
+            lines.add("  /api/r" + i + ":");
+            lines.add(operation("get"));
+        }
+        lines.add("components:\n  schemas:\n    Item:\n      type: object\n      properties:\n        name:\n          type: string");
+
+        Path output = folder.getRoot().toPath().resolve("output");
+        new OpenApiGenerator(output.toFile(), GeneratedSources.specification(folder.getRoot().toPath(), lines.toArray(new String[0]))).execute();
+        Method route = compile(output);
+
+        assertThat(route.getDeclaringClass().getDeclaredMethod("route1") != null, is(true));
+        assertThat(route(route, "GET", "/api/r0"), is("api.getR0 {}"));
+        assertThat(route(route, "GET", "/api/r1199"), is("api.getR1199 {}"));
+    }
+
+    private static String operation(final String method) {
+        return "    " + method + ":\n      responses:\n        '204':\n          description: Done";
+    }
+
+    private static Method compile(final Path output) throws IOException, ReflectiveOperationException {
+        String source = new String(Files.readAllBytes(output.resolve("src/main/java/" + ROUTER.replace('.', '/') + ".java")), StandardCharsets.UTF_8);
+        assertThat(source.contains("PATCH"), is(false));
+
+        return GeneratedSources.compile(output).loadClass(ROUTER).getMethod("route", String.class, String.class);
+    }
+
+    private static String route(final Method route, final String method, final String path) throws ReflectiveOperationException {
+        Object matched = route.invoke(null, method, path);
+        if (matched == null) {
+            return null;
+        }
+        return matched.getClass().getMethod("operation").invoke(matched) + " " + matched.getClass().getMethod("parameters").invoke(matched);
+    }
+}
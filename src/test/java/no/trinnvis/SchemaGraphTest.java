@@ -0,0 +1,54 @@
+package no.trinnvis;
+
+import io.swagger.oas.models.media.ArraySchema;
+import io.swagger.oas.models.media.ObjectSchema;
+import io.swagger.oas.models.media.Schema;
+import io.swagger.oas.models.media.StringSchema;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class SchemaGraphTest {
+
+    @Test
+    public void testChangeAffectsDependents() {
+        Map<String, Schema> schemas = schemas();
+        GenerationState previous = state(SchemaGraph.of(schemas));
+
+        schemas.get("Address").addProperties("zip", new StringSchema());
+        SchemaGraph graph = SchemaGraph.of(schemas);
+
+        assertThat(graph.dependenciesOf("Person"), is(new HashSet<>(Arrays.asList("Address", "Phone"))));
+        assertThat(graph.affected(previous, Collections.emptySet()), is(new HashSet<>(Arrays.asList("Address", "Person"))));
+    }
+
+    @Test
+    public void testUnchangedSchemasAreNotAffected() {
+        Map<String, Schema> schemas = schemas();
+        SchemaGraph graph = SchemaGraph.of(schemas);
+
+        assertThat(graph.affected(state(graph), Collections.emptySet()).isEmpty(), is(true));
+        assertThat(graph.affected(state(graph), Collections.singleton("Phone")), is(new HashSet<>(Arrays.asList("Phone", "Person"))));
+    }
+
+    private Map<String, Schema> schemas() {
+        Map<String, Schema> schemas = new LinkedHashMap<>();
+        schemas.put("Address", new ObjectSchema().addProperties("street", new StringSchema()));
+        schemas.put("Phone", new ObjectSchema().addProperties("number", new StringSchema()));
+        schemas.put("Person", new ObjectSchema()
+            .addProperties("address", new Schema().$ref("#/components/schemas/Address"))
+            .addProperties("phones", new ArraySchema().items(new Schema().$ref("#/components/schemas/Phone"))));
+        return schemas;
+    }
+
+    private GenerationState state(final SchemaGraph graph) {
+        GenerationState state = new GenerationState("test");
+        graph.names().forEach(name -> state.put(name, graph.hashOf(name), graph.dependenciesOf(name), Collections.emptySet()));
+        return state;
+    }
+}
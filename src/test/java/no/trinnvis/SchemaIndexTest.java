@@ -0,0 +1,67 @@
+package no.trinnvis;
+
+import io.swagger.oas.models.media.ObjectSchema;
+import io.swagger.oas.models.media.Schema;
+import io.swagger.oas.models.media.StringSchema;
+import java.lang.reflect.ParameterizedType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SchemaIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNamesAreLookedUpByIdentity() {
+        Schema customer = new ObjectSchema();
+        SchemaIndex index = new SchemaIndex(schemas(customer));
+
+        assertThat(index.nameOf(customer), is(Optional.of("Customer")));
+        assertThat(index.nameOf(new ObjectSchema()), is(Optional.<String>empty()));
+    }
+
+    @Test
+    public void testReferencesResolveToComponentSchemas() {
+        Schema customer = new ObjectSchema();
+        SchemaIndex index = new SchemaIndex(schemas(customer));
+
+        Schema reference = new Schema().$ref("#/components/schemas/Customer");
+        assertThat(index.dereference(reference), is(sameInstance(customer)));
+        assertThat(index.dereference(reference), is(sameInstance(customer)));
+
+        Schema plain = new StringSchema();
+        assertThat(index.dereference(plain), is(sameInstance(plain)));
+
+        assertThat(index.dereference(new Schema().$ref("#/components/schemas/Missing")), is(nullValue()));
+    }
+
+    @Test
+    public void testReferencedPropertiesUseTheModelClass() throws Exception {
+        ClassLoader loader = GeneratedSources.compile(GeneratedSources.generate(folder.getRoot(), "models.yaml", generator -> { }));
+        Class<?> line = loader.loadClass("no.trinnvis.dabih.api.Line");
+        Class<?> order = loader.loadClass("no.trinnvis.dabih.api.Order");
+
+        assertThat(order.getDeclaredField("line").getType(), is((Object) line));
+
+        ParameterizedType lines = (ParameterizedType) order.getDeclaredField("lines").getGenericType();
+        assertThat(lines.getRawType(), is((Object) List.class));
+        assertThat(lines.getActualTypeArguments()[0], is((Object) line));
+    }
+
+    private static Map<String, Schema> schemas(final Schema customer) {
+        Map<String, Schema> schemas = new LinkedHashMap<>();
+        schemas.put("Customer", customer);
+        schemas.put("Name", new StringSchema());
+        return schemas;
+    }
+}
@@ -0,0 +1,92 @@
+package no.trinnvis;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Generated;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedFileIsNotRewritten() throws IOException {
+        SourceWriter writer = new SourceWriter(folder.getRoot().toPath());
+
+        assertThat(writer.write(javaFile("Item")), is(true));
+        assertThat(writer.write(javaFile("Item")), is(false));
+    }
+
+    @Test
+    public void testOrphansAreDeleted() throws IOException {
+        new SourceWriter(folder.getRoot().toPath()).write(javaFile("Removed"));
+
+        SourceWriter writer = new SourceWriter(folder.getRoot().toPath());
+        writer.write(javaFile("Item"));
+
+        Path removed = new File(folder.getRoot(), "no/trinnvis/test/Removed.java").toPath();
+        assertThat(writer.deleteOrphans(), is(Collections.singletonList(removed)));
+        assertThat(Files.exists(removed), is(false));
+    }
+
+    @Test
+    public void testSourcesWithoutTheMarkerAreKept() throws IOException {
+        Path handWritten = new File(folder.getRoot(), "no/trinnvis/test/HandWritten.java").toPath();
+        Files.createDirectories(handWritten.getParent());
+        Files.write(handWritten, "package no.trinnvis.test;\n\nclass HandWritten {}\n".getBytes(StandardCharsets.UTF_8));
+
+        SourceWriter writer = new SourceWriter(folder.getRoot().toPath());
+        writer.write(javaFile("Item"));
+
+        assertThat(writer.deleteOrphans(), is(Collections.<Path>emptyList()));
+        assertThat(Files.exists(handWritten), is(true));
+    }
+
+    @Test
+    public void testConcurrentWritesLeaveOneCompleteFile() throws Exception {
+        Path root = folder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> writes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            JavaFile javaFile = JavaFile.builder("no.trinnvis.test", TypeSpec.classBuilder("Item")
+                .addField(int.class, "field" + (i % 4))
+                .build()).build();
+            writes.add(executor.submit(() -> new SourceWriter(root).write(javaFile)));
+        }
+        for (Future<Boolean> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+
+        Path directory = new File(folder.getRoot(), "no/trinnvis/test").toPath();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).collect(Collectors.toList()), is(Collections.singletonList("Item.java")));
+        }
+        assertThat(new String(Files.readAllBytes(directory.resolve("Item.java")), StandardCharsets.UTF_8).matches("(?s).*int field[0-3];\\s*}\\s*"), is(true));
+    }
+
+    private JavaFile javaFile(final String name) {
+        return JavaFile.builder("no.trinnvis.test", TypeSpec.classBuilder(name)
+            .addAnnotation(AnnotationSpec.builder(Generated.class).addMember("value", "$S", SourceWriter.GENERATED).build())
+            .build()).build();
+    }
+}
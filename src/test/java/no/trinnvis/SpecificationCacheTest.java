@@ -0,0 +1,95 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpecificationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedSpecificationIsParsedOnce() throws IOException {
+        File snapshots = folder.newFolder("snapshots");
+        File first = copy("first.yaml");
+
+        SpecificationCache.Specification parsed = SpecificationCache.parse(first, snapshots);
+        assertThat(SpecificationCache.parse(first, snapshots), is(sameInstance(parsed)));
+        String[] snapshot = snapshots.list();
+        assertThat(snapshot.length, is(1));
+
+        Files.write(first.toPath(), "\n# changed\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertThat(SpecificationCache.parse(first, snapshots), is(not(sameInstance(parsed))));
+        // the snapshot of the changed specification replaces the previous one
+        assertThat(snapshots.list().length, is(1));
+        assertThat(snapshots.list()[0], is(not(snapshot[0])));
+    }
+
+    @Test
+    public void testChangedReferencedFileIsParsedAgain() throws IOException {
+        File specification = GeneratedSources.fixture(folder.getRoot(), "references.yaml");
+        Path item = Files.write(folder.getRoot().toPath().resolve("item.yaml"), "Item:\n  type: object\n".getBytes(StandardCharsets.UTF_8));
+
+        SpecificationCache.Specification parsed = SpecificationCache.parse(specification, null);
+        assertThat(SpecificationCache.parse(specification, null), is(sameInstance(parsed)));
+
+        Files.write(item, "Item:\n  type: string\n".getBytes(StandardCharsets.UTF_8));
+        assertThat(SpecificationCache.parse(specification, null), is(not(sameInstance(parsed))));
+    }
+
+    @Test
+    public void testConcurrentParsesShareOneSpecification() throws Exception {
+        File specification = copy("shared.yaml");
+
+        List<Callable<SpecificationCache.Specification>> parses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            parses.add(() -> SpecificationCache.parse(specification, null));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SpecificationCache.Specification>> parsed = executor.invokeAll(parses);
+            for (Future<SpecificationCache.Specification> future : parsed) {
+                assertThat(future.get(), is(sameInstance(parsed.get(0).get())));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSnapshotParsesLikeTheSpecification() throws IOException {
+        File snapshots = folder.newFolder("snapshots");
+        File specification = copy("first.yaml");
+
+        SpecificationCache.Specification parsed = SpecificationCache.parse(specification, snapshots);
+        // read from the snapshot rather than the specification
+        SpecificationCache.clear();
+        SpecificationCache.Specification loaded = SpecificationCache.parse(specification, snapshots);
+
+        assertThat(loaded, is(not(sameInstance(parsed))));
+        assertThat(loaded.openAPI().getComponents().getSchemas().keySet(), is(parsed.openAPI().getComponents().getSchemas().keySet()));
+        assertThat(loaded.openAPI().getPaths().keySet(), is(parsed.openAPI().getPaths().keySet()));
+        assertThat(loaded.openAPI(), is(parsed.openAPI()));
+    }
+
+    private File copy(final String name) throws IOException {
+        return Files.copy(new File("test/openapi.yaml").toPath(), folder.getRoot().toPath().resolve(name)).toFile();
+    }
+}
@@ -0,0 +1,36 @@
+package no.trinnvis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpecificationWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBurstOfChangesIsReportedOnce() throws IOException, InterruptedException {
+        Path root = folder.getRoot().toPath();
+        File specification = Files.write(root.resolve("openapi.yaml"), "openapi: 3.0.0\n".getBytes(StandardCharsets.UTF_8)).toFile();
+
+        try (SpecificationWatcher watcher = new SpecificationWatcher(200)) {
+            watcher.watch(Collections.singleton(specification));
+
+            Files.write(root.resolve("notes.txt"), "unrelated".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 3; i++) {
+                Files.write(specification.toPath(), ("openapi: 3.0." + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(watcher.await(), is(Collections.singleton(specification.getCanonicalFile())));
+        }
+    }
+}
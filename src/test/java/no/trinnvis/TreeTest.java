@@ -0,0 +1,63 @@
+package no.trinnvis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class TreeTest {
+
+    @Test
+    public void testPathsShareTreesAndKeepInsertionOrder() {
+        Tree<String> root = new Tree<>("");
+        Tree<String> computers = root.insertPath(Arrays.asList("organizations", "{id}", "computers"));
+        root.insertPath(Arrays.asList("accounts", "search"));
+        root.insertPath(Arrays.asList("organizations", "{id}", "contracts"));
+
+        assertThat(root.insertPath(Arrays.asList("organizations", "{id}", "computers")), is(sameInstance(computers)));
+        assertThat(root.insertPath(Collections.emptyList()), is(sameInstance(root)));
+        assertThat(visited(root), is(Arrays.asList("0 ", "1 organizations", "2 {id}", "3 computers", "3 contracts", "1 accounts", "2 search")));
+    }
+
+    @Test
+    public void testDeepTreeIsVisitedWithoutRecursion() {
+        Tree<String> root = new Tree<>("");
+        List<String> path = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            path.add("s" + i);
+        }
+        root.insertPath(path);
+
+        List<String> visited = visited(root);
+        assertThat(visited.size(), is(100_001));
+        assertThat(visited.get(100_000), is("100000 s99999"));
+    }
+
+    private List<String> visited(final Tree<String> root) {
+        List<String> visited = new ArrayList<>();
+        root.accept(new DepthVisitor(0, visited));
+        return visited;
+    }
+
+    private static final class DepthVisitor implements Visitor<String> {
+        private final int depth;
+        private final List<String> visited;
+
+        DepthVisitor(final int depth, final List<String> visited) {
+            this.depth = depth;
+            this.visited = visited;
+        }
+
+        public Visitor<String> visitTree(final Tree<String> tree) {
+            return new DepthVisitor(depth + 1, visited);
+        }
+
+        public void visitData(final Tree<String> parent, final String data) {
+            visited.add(depth + " " + data);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package no.trinnvis;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ValueMethodsTest {
+
+    private static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static ClassLoader generated;
+
+    @BeforeClass
+    public static void generate() throws Exception {
+        FOLDER.create();
+        generated = GeneratedSources.compile(GeneratedSources.generate(FOLDER.getRoot(), "models.yaml", generator -> generator.primitiveNumbers(true)));
+    }
+
+    @AfterClass
+    public static void delete() {
+        FOLDER.delete();
+    }
+
+    @Test
+    public void testPropertiesNamedHashKeepTheirValues() throws Exception {
+        Object tagged = tagged("a", "b", 0.5, new int[] {1, 2}, "x");
+
+        assertThat(tagged.getClass().getMethod("getHash").invoke(tagged), is((Object) "a"));
+        assertThat(tagged.getClass().getMethod("getHash2").invoke(tagged), is((Object) "b"));
+        assertThat(generated.loadClass("no.trinnvis.dabih.api.Hashed").getDeclaredField("hash3").getType(), is((Object) int.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOnlyImmutableModelsCacheTheirHash() throws Exception {
+        assertThat(hasField("Hashed", "hash3"), is(true));
+        assertThat(hasField("Line", "hash"), is(true));
+        // a mutable list and array, and a map of additional properties
+        assertThat(hasField("Tagged", "hash3"), is(false));
+        assertThat(hasField("Order", "hash"), is(false));
+
+        Object tagged = tagged("a", "b", 0.5, new int[] {1, 2}, "x");
+        tagged.hashCode();
+        ((List<Object>) tagged.getClass().getMethod("getNames").invoke(tagged)).add("y");
+
+        Object changed = tagged("a", "b", 0.5, new int[] {1, 2}, "x", "y");
+        assertThat(tagged.equals(changed), is(true));
+        assertThat(tagged.hashCode(), is(changed.hashCode()));
+
+        // the hash of one side is cached, the other is not
+        Object hashed = hashed("a", "b");
+        hashed.hashCode();
+        assertThat(hashed.equals(hashed("a", "b")), is(true));
+        assertThat(hashed.equals(hashed("a", "c")), is(false));
+        assertThat(hashed.hashCode(), is(hashed("a", "b").hashCode()));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() throws Exception {
+        Object tagged = tagged("a", "b", Double.NaN, new int[] {1, 2}, "x", "y");
+        Object same = tagged("a", "b", Double.NaN, new int[] {1, 2}, "x", "y");
+
+        assertThat(tagged.hashCode(), is(same.hashCode()));
+        assertThat(tagged.hashCode(), is(tagged.hashCode()));
+        assertThat(tagged.equals(same), is(true));
+        assertThat(same.equals(tagged), is(true));
+
+        Object other = tagged("a", "b", Double.NaN, new int[] {1, 3}, "x", "y");
+        assertThat(tagged.equals(other), is(false));
+        assertThat(tagged("a", "c", Double.NaN, new int[] {1, 2}, "x", "y").equals(tagged), is(false));
+        assertThat(tagged("a", "b", 0.0, new int[] {1, 2}, "x", "y"), is(not(tagged("a", "b", -0.0, new int[] {1, 2}, "x", "y"))));
+        assertThat(tagged("a", "b", 0.0, new int[] {1, 2}, "x", "y").equals(tagged("a", "b", 0.0, new int[] {1, 2}, "y", "x")), is(false));
+        assertThat(tagged.equals(null), is(false));
+        assertThat(tagged.equals("a"), is(false));
+
+        Object empty = build(generated.loadClass("no.trinnvis.dabih.api.Empty").getMethod("builder").invoke(null));
+        assertThat(empty.equals(build(generated.loadClass("no.trinnvis.dabih.api.Empty").getMethod("builder").invoke(null))), is(true));
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        assertThat(tagged("a", null, 0.5, new int[] {1, 2}, "x", "y").toString(),
+            is("Tagged{hash=a, hash2=null, ratio=0.5, values=[1, 2], names=[x, y]}"));
+
+        Object empty = build(generated.loadClass("no.trinnvis.dabih.api.Empty").getMethod("builder").invoke(null));
+        assertThat(empty.toString(), is("Empty{}"));
+    }
+
+    private static Object tagged(final String hash, final String hash2, final double ratio, final int[] values, final String... names) throws Exception {
+        Object builder = generated.loadClass("no.trinnvis.dabih.api.Tagged").getMethod("builder").invoke(null);
+        for (Method method : builder.getClass().getMethods()) {
+            switch (method.getName()) {
+                case "hash":
+                    method.invoke(builder, hash);
+                    break;
+                case "hash2":
+                    method.invoke(builder, hash2);
+                    break;
+                case "ratio":
+                    method.invoke(builder, ratio);
+                    break;
+                case "values":
+                    method.invoke(builder, (Object) values);
+                    break;
+                case "names":
+                    method.invoke(builder, new ArrayList<>(Arrays.asList(names)));
+                    break;
+                default:
+            }
+        }
+        return build(builder);
+    }
+
+    private static Object hashed(final String hash, final String hash2) throws Exception {
+        Object builder = generated.loadClass("no.trinnvis.dabih.api.Hashed").getMethod("builder").invoke(null);
+        builder.getClass().getMethod("hash", String.class).invoke(builder, hash);
+        builder.getClass().getMethod("hash2", String.class).invoke(builder, hash2);
+        return build(builder);
+    }
+
+    private static boolean hasField(final String model, final String name) throws ClassNotFoundException {
+        for (Field field : generated.loadClass("no.trinnvis.dabih.api." + model).getDeclaredFields()) {
+            if (field.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object build(final Object builder) throws Exception {
+        return builder.getClass().getMethod("build").invoke(builder);
+    }
+}